@@ -0,0 +1,85 @@
+package study.querydsl.benchmark;
+
+import static querydsl.study.querydsl.entity.QMember.member;
+import static querydsl.study.querydsl.entity.QTeam.team;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import study.querydsl.repository.support.ColumnarQuery;
+import study.querydsl.repository.support.ColumnarResult;
+import study.querydsl.repository.support.ColumnarResult.Dictionary;
+
+/**
+ * 팀별 나이 합계를 자바에서 계산: Tuple 목록 vs ColumnarQuery
+ * 쿼리 모양(member left join team, 컬럼 3개)은 같다.
+ * -prof gc로 보면 op당 할당량은 비슷하다. (대부분 Hibernate가 row마다 만드는 배열과 boxing)
+ * 차이는 결과를 들고 있는 동안의 메모리: Tuple 목록은 row마다 Tuple + Object[] + Long, 컬럼 배열은 row당 16 byte
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ColumnarBenchmark {
+
+	private JPAQueryFactory queryFactory;
+	private TransactionTemplate transaction;
+
+	@Setup
+	public void setUp(MemberFixture fixture) {
+		queryFactory = fixture.getBean(JPAQueryFactory.class);
+		transaction = new TransactionTemplate(fixture.getBean(PlatformTransactionManager.class));
+		transaction.setReadOnly(true);
+	}
+
+	@Benchmark
+	public Map<String, Long> tuple() {
+		return transaction.execute(status -> {
+			List<Tuple> rows = queryFactory
+					.select(member.id, member.age, team.name)
+					.from(member)
+					.leftJoin(member.team, team)
+					.fetch();
+			Map<String, Long> sums = new HashMap<>();
+			for (Tuple row : rows) {
+				sums.merge(row.get(team.name), (long) row.get(member.age), Long::sum);
+			}
+			return sums;
+		});
+	}
+
+	@Benchmark
+	public long[] columnar() {
+		return transaction.execute(status -> {
+			ColumnarResult result = ColumnarQuery.from(queryFactory
+							.from(member)
+							.leftJoin(member.team, team))
+					.longs(member.id)
+					.ints(member.age)
+					.dictionary(team.name)
+					.fetch();
+			Dictionary teams = result.getDictionary(team.name);
+			return teams.sums(result.getInts(member.age));
+		});
+	}
+}
@@ -0,0 +1,94 @@
+package study.querydsl.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberRepository;
+
+/**
+ * Member/Team 인덱스 유무에 따른 검색 지연 시간 (MemberRepositoryImpl.search)
+ *
+ * indexed=false면 엔티티에 선언한 인덱스를 지우고 측정한다. (FK 인덱스는 남는다)
+ * 시작할 때 각 검색 모양의 EXPLAIN 결과를 출력한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexBenchmark {
+
+	private static final String[] INDEXES = {
+			"idx_member_username", "idx_member_team_age_username", "idx_member_age", "idx_team_name" };
+
+	// MemberRepositoryImpl.search가 만드는 SQL 모양
+	private static final String SELECT = "select m.member_id, m.username, m.age, m.team_id from member m ";
+
+	@Param({ "true", "false" })
+	public boolean indexed;
+
+	private MemberRepository memberRepository;
+	private MemberSearchCondition teamAndAge;
+	private MemberSearchCondition username;
+	private MemberSearchCondition ageRange;
+
+	@Setup
+	public void setUp(MemberFixture fixture) {
+		memberRepository = fixture.getBean(MemberRepository.class);
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(fixture.getBean(DataSource.class));
+		if (!indexed) {
+			for (String index : INDEXES) {
+				jdbcTemplate.execute("drop index if exists " + index);
+			}
+		}
+		Long teamId = jdbcTemplate.queryForObject("select team_id from team where name = 'team1'", Long.class);
+		explain(jdbcTemplate, "teamAndAge", SELECT + "where m.team_id in (" + teamId + ") and m.age >= 20 and m.age <= 40");
+		explain(jdbcTemplate, "username", SELECT + "where m.username = 'member123'");
+		explain(jdbcTemplate, "ageRange", SELECT + "where m.age >= 20 and m.age <= 21");
+
+		teamAndAge = MemberFixture.narrowCondition();
+		username = new MemberSearchCondition();
+		username.setUsername("member123");
+		ageRange = new MemberSearchCondition();
+		ageRange.setAgeGoe(20);
+		ageRange.setAgeLoe(21);
+	}
+
+	private void explain(JdbcTemplate jdbcTemplate, String name, String sql) {
+		String plan = jdbcTemplate.queryForObject("explain " + sql, String.class);
+		System.out.println("[EXPLAIN indexed=" + indexed + " " + name + "]\n" + plan);
+	}
+
+	@Benchmark
+	public List<MemberTeamDto> teamAndAge() {
+		return memberRepository.search(teamAndAge);
+	}
+
+	@Benchmark
+	public List<MemberTeamDto> username() {
+		return memberRepository.search(username);
+	}
+
+	@Benchmark
+	public List<MemberTeamDto> ageRange() {
+		return memberRepository.search(ageRange);
+	}
+}
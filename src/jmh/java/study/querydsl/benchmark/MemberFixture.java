@@ -0,0 +1,88 @@
+package study.querydsl.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import study.querydsl.QuerydslApplication;
+import study.querydsl.dto.MemberImportRow;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.service.MemberImportService;
+
+/**
+ * 벤치마크 공용 fixture
+ *
+ * 메모리 H2로 애플리케이션 컨텍스트를 띄우고 member 데이터를 넣어둔다.
+ * SQL 로그, count 캐시, 검색 JPQL 캐시(MemberSearchQueryCache)는 측정값을 왜곡하므로 끈다.
+ * (local 프로파일의 InitMember도 실행되지 않도록 프로파일을 바꾼다)
+ */
+@State(Scope.Benchmark)
+public class MemberFixture {
+
+	public static final int TEAM_COUNT = 10;
+
+	@Param({ "1000", "10000" })
+	public int memberCount;
+
+	private ConfigurableApplicationContext context;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		context = new SpringApplicationBuilder(QuerydslApplication.class)
+				.web(WebApplicationType.NONE)
+				.run(
+						"--spring.profiles.active=benchmark",
+						"--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+						"--spring.jpa.properties.hibernate.use_sql_comments=false",
+						"--logging.level.root=warn",
+						"--logging.level.org.hibernate.SQL=warn",
+						"--logging.level.org.hibernate.type=warn",
+						"--member.count-cache.max-size=0",
+						"--member.search-query-cache.enabled=false"
+				);
+
+		List<MemberImportRow> rows = new ArrayList<>(memberCount);
+		for (int i = 0; i < memberCount; i++) {
+			rows.add(new MemberImportRow("member" + i, i % 100, "team" + (i % TEAM_COUNT)));
+		}
+		getBean(MemberImportService.class).importMembers(rows.iterator());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.close();
+	}
+
+	public <T> T getBean(Class<T> type) {
+		return context.getBean(type);
+	}
+
+	/**
+	 * 팀 하나, 나이 범위 하나로 전체의 약 2%가 조회되는 조건
+	 */
+	public static MemberSearchCondition narrowCondition() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setTeamName("team1");
+		condition.setAgeGoe(20);
+		condition.setAgeLoe(40);
+		return condition;
+	}
+
+	/**
+	 * 페이징 벤치마크용. 전체의 90%가 조건에 걸린다.
+	 */
+	public static MemberSearchCondition wideCondition() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setAgeGoe(10);
+		return condition;
+	}
+}
@@ -0,0 +1,56 @@
+package study.querydsl.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberRepository;
+
+/**
+ * 페이징 count: fetchResults(searchPageSimple) vs 분리된 count 쿼리(searchPageComplex)
+ * 첫 페이지는 count를 생략할 수 있으므로 두번째 페이지를 조회한다.
+ * (fixture에서 count 캐시를 꺼두었으므로 매번 count 쿼리가 실행된다)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PagingBenchmark {
+
+	private MemberRepository memberRepository;
+	private MemberSearchCondition condition;
+	private Pageable pageable;
+
+	@Setup
+	public void setUp(MemberFixture fixture) {
+		memberRepository = fixture.getBean(MemberRepository.class);
+		condition = MemberFixture.wideCondition();
+		pageable = PageRequest.of(1, 20);
+	}
+
+	@Benchmark
+	public Page<MemberTeamDto> fetchResults() {
+		return memberRepository.searchPageSimple(condition, pageable);
+	}
+
+	@Benchmark
+	public Page<MemberTeamDto> splitCount() {
+		return memberRepository.searchPageComplex(condition, pageable);
+	}
+}
@@ -0,0 +1,125 @@
+package study.querydsl.benchmark;
+
+import static querydsl.study.querydsl.entity.QMember.member;
+import static querydsl.study.querydsl.entity.QTeam.team;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Projections;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import querydsl.study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.support.FastProjections;
+
+/**
+ * DTO 조회 방식별 비용: Projections.bean / fields / constructor vs FastProjections vs @QueryProjection
+ * 쿼리 모양은 모두 같고 결과를 DTO로 만드는 방법만 다르다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProjectionBenchmark {
+
+	private JPAQueryFactory queryFactory;
+
+	@Setup
+	public void setUp(MemberFixture fixture) {
+		queryFactory = fixture.getBean(JPAQueryFactory.class);
+	}
+
+	@Benchmark
+	public List<MemberTeamDto> bean() {
+		return fetch(Projections.bean(MemberTeamDto.class,
+				member.id.as("memberId"),
+				member.username,
+				member.age,
+				team.id.as("teamId"),
+				team.name.as("teamName")));
+	}
+
+	@Benchmark
+	public List<MemberTeamDto> fields() {
+		return fetch(Projections.fields(MemberTeamDto.class,
+				member.id.as("memberId"),
+				member.username,
+				member.age,
+				team.id.as("teamId"),
+				team.name.as("teamName")));
+	}
+
+	@Benchmark
+	public List<MemberTeamDto> constructor() {
+		return fetch(Projections.constructor(MemberTeamDto.class,
+				member.id,
+				member.username,
+				member.age,
+				team.id,
+				team.name));
+	}
+
+	@Benchmark
+	public List<MemberTeamDto> fastBean() {
+		return fetch(FastProjections.bean(MemberTeamDto.class,
+				member.id.as("memberId"),
+				member.username,
+				member.age,
+				team.id.as("teamId"),
+				team.name.as("teamName")));
+	}
+
+	@Benchmark
+	public List<MemberTeamDto> fastFields() {
+		return fetch(FastProjections.fields(MemberTeamDto.class,
+				member.id.as("memberId"),
+				member.username,
+				member.age,
+				team.id.as("teamId"),
+				team.name.as("teamName")));
+	}
+
+	@Benchmark
+	public List<MemberTeamDto> fastConstructor() {
+		return fetch(FastProjections.constructor(MemberTeamDto.class,
+				member.id,
+				member.username,
+				member.age,
+				team.id,
+				team.name));
+	}
+
+	@Benchmark
+	public List<MemberTeamDto> queryProjection() {
+		return fetch(new QMemberTeamDto(
+				member.id,
+				member.username,
+				member.age,
+				team.id,
+				team.name));
+	}
+
+	private List<MemberTeamDto> fetch(Expression<MemberTeamDto> projection) {
+		return queryFactory
+				.select(projection)
+				.from(member)
+				.leftJoin(member.team, team)
+				.where(team.name.eq("team1"))
+				.fetch();
+	}
+}
@@ -0,0 +1,71 @@
+package study.querydsl.benchmark;
+
+import static querydsl.study.querydsl.entity.QMember.member;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.annotations.QueryHints;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import study.querydsl.entity.Member;
+
+/**
+ * 엔티티 전체 조회 + flush 비용: 일반 조회 vs read-only 조회
+ *
+ * 읽기/쓰기 트랜잭션 안에서 member 전체를 엔티티로 조회한 뒤 flush한다. (변경 없음)
+ * 일반 조회는 row마다 스냅샷을 트랜잭션이 끝날 때까지 들고 있고 flush 때 모두 비교한다.
+ * read-only는 스냅샷을 버리고 flush 때 건너뛴다. (할당량 자체는 비슷하고, 줄어드는 것은 유지되는 메모리와 flush 시간)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadOnlyBenchmark {
+
+	private EntityManager em;
+	private JPAQueryFactory queryFactory;
+	private TransactionTemplate transaction;
+
+	@Setup
+	public void setUp(MemberFixture fixture) {
+		em = fixture.getBean(EntityManager.class);
+		queryFactory = fixture.getBean(JPAQueryFactory.class);
+		transaction = new TransactionTemplate(fixture.getBean(PlatformTransactionManager.class));
+	}
+
+	@Benchmark
+	public int managed() {
+		return fetchAndFlush(queryFactory.selectFrom(member));
+	}
+
+	@Benchmark
+	public int readOnly() {
+		return fetchAndFlush(queryFactory.selectFrom(member).setHint(QueryHints.READ_ONLY, true));
+	}
+
+	private int fetchAndFlush(JPAQuery<Member> query) {
+		return transaction.execute(status -> {
+			int size = query.fetch().size();
+			em.flush();
+			return size;
+		});
+	}
+}
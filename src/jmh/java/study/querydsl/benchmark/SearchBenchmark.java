@@ -0,0 +1,51 @@
+package study.querydsl.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberJpaRepository;
+
+/**
+ * 동적 쿼리: where 파라미터(search) vs BooleanBuilder(searchByBuilder)
+ * 두 방식의 차이는 표현식 트리를 만들고 직렬화하는 비용이므로 JPQL 캐시를 끄고 측정한다. (MemberFixture)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+	private MemberJpaRepository memberJpaRepository;
+	private MemberSearchCondition condition;
+
+	@Setup
+	public void setUp(MemberFixture fixture) {
+		memberJpaRepository = fixture.getBean(MemberJpaRepository.class);
+		condition = MemberFixture.narrowCondition();
+	}
+
+	@Benchmark
+	public List<MemberTeamDto> whereParam() {
+		return memberJpaRepository.search(condition);
+	}
+
+	@Benchmark
+	public List<MemberTeamDto> booleanBuilder() {
+		return memberJpaRepository.searchByBuilder(condition);
+	}
+}
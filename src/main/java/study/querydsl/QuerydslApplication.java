@@ -2,12 +2,17 @@ package study.querydsl;
 
 import javax.persistence.EntityManager;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
 
 import com.querydsl.jpa.impl.JPAQueryFactory;
 
+import study.querydsl.metrics.QueryMetricsRegistry;
+import study.querydsl.repository.support.TrackingJPAQueryFactory;
+
 @SpringBootApplication
 public class QuerydslApplication {
 
@@ -16,7 +21,9 @@ public class QuerydslApplication {
 	}
 
 	@Bean
-	public JPAQueryFactory jpaQueryFactory(EntityManager em) {
-		return new JPAQueryFactory(em);
+	public JPAQueryFactory jpaQueryFactory(EntityManager em, ApplicationEventPublisher publisher,
+			ObjectProvider<QueryMetricsRegistry> queryMetricsRegistry) {
+		// 벌크 연산 execute를 EntityChangeEvent로 알려주고, 쿼리 실행 지표를 기록하는 JPAQueryFactory
+		return new TrackingJPAQueryFactory(em, publisher, queryMetricsRegistry.getIfAvailable());
 	}
 }
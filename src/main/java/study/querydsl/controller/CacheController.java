@@ -0,0 +1,29 @@
+package study.querydsl.controller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import lombok.RequiredArgsConstructor;
+import study.querydsl.repository.MemberSearchResultCache;
+import study.querydsl.repository.support.CacheStats;
+import study.querydsl.repository.support.CountCache;
+
+@RestController
+@RequiredArgsConstructor
+public class CacheController {
+
+	private final CountCache countCache;
+	private final MemberSearchResultCache searchResultCache;
+
+	// 캐시별 hit/miss/eviction 통계
+	@GetMapping("/caches")
+	public Map<String, CacheStats> stats() {
+		Map<String, CacheStats> stats = new LinkedHashMap<>();
+		stats.put("count", countCache.stats());
+		stats.put("search", searchResultCache.stats());
+		return stats;
+	}
+}
@@ -1,17 +1,42 @@
 package study.querydsl.controller;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import lombok.RequiredArgsConstructor;
+import study.querydsl.controller.SearchBulkheads.Bulkhead;
+import study.querydsl.dto.MemberCursorPage;
+import study.querydsl.dto.MemberImportResult;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.InvalidCursorException;
 import study.querydsl.repository.MemberJpaRepository;
 import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.MemberSearchResultCache;
+import study.querydsl.repository.UsernameMatch;
+import study.querydsl.service.MemberImportService;
 
 @RestController
 @RequiredArgsConstructor
@@ -19,20 +44,96 @@ public class MemberController {
 
 	private final MemberJpaRepository memberJpaRepository;
 	private final MemberRepository memberRepository;
+	private final MemberImportService memberImportService;
+	private final MemberSearchResultCache searchResultCache;
+	private final SearchBulkheads bulkheads;
+	private final ObjectMapper objectMapper;
 	
+	@Value("${member.export.fetch-size:500}")
+	private int exportFetchSize;
+	
+	/*
+	 * 검색은 요청 스레드 대신 SearchBulkheads의 전용 풀에서 실행한다.
+	 * 풀이 가득 차면 기다리지 않고 503으로 거절한다.
+	 */
 	@GetMapping("/v1/members")
-	public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition) {
-		return memberJpaRepository.search(condition);
+	public CompletableFuture<List<MemberTeamDto>> searchMemberV1(MemberSearchCondition condition) {
+		return bulkheads.submit(Bulkhead.SCAN,
+				() -> searchResultCache.list("v1", condition, () -> memberJpaRepository.search(condition)));
+	}
+	
+	/*
+	 * export도 결과 전체를 읽으므로 SCAN 풀에서 실행한다. 스트리밍하는 동안 커넥션을 잡고 있으므로
+	 * 요청 스레드에서 실행하면 동시에 export가 몰릴 때 커넥션 풀을 다 쓸 수 있다.
+	 * 응답은 async 처리 중에 풀 스레드에서 바로 쓴다.
+	 * http://localhost:8080/v1/members/export?format=csv&teamName=teamA
+	 */
+	@GetMapping("/v1/members/export")
+	public CompletableFuture<Void> exportMemberV1(MemberSearchCondition condition,
+			@RequestParam(defaultValue = "ndjson") String format, HttpServletResponse response) throws IOException {
+		MemberFileFormat exportFormat = MemberFileFormat.of(format);
+		response.setContentType(exportFormat.getContentType());
+		response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		
+		MemberExportWriter writer = new MemberExportWriter(exportFormat, response.getWriter(), objectMapper);
+		return bulkheads.submit(Bulkhead.SCAN, () -> {
+			writer.writeHeader();
+			memberJpaRepository.searchStream(condition, exportFetchSize, writer::write);
+			writer.flush();
+			return null;
+		});
+	}
+	
+	// curl -X POST -H "Content-Type: text/csv" --data-binary @members.csv "http://localhost:8080/v1/members/import?format=csv"
+	@PostMapping("/v1/members/import")
+	public MemberImportResult importMemberV1(@RequestParam(defaultValue = "ndjson") String format,
+			HttpServletRequest request) throws IOException {
+		MemberFileFormat importFormat = MemberFileFormat.of(format);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8));
+		return memberImportService.importMembers(new MemberImportReader(importFormat, reader, objectMapper));
 	}
 	
 	@GetMapping("/v2/members")
-	public Page<MemberTeamDto> searchMemberV2(MemberSearchCondition condition, Pageable pageable) {
-		return memberRepository.searchPageSimple(condition, pageable);
+	public CompletableFuture<Page<MemberTeamDto>> searchMemberV2(MemberSearchCondition condition, Pageable pageable) {
+		return bulkheads.submit(Bulkhead.PAGE, () -> memberRepository.searchPageSimple(condition, pageable));
 	}
 	
 	// http://localhost:8080/v3/members?teamName=teamA&ageGoe=40&page=3&size=8
 	@GetMapping("/v3/members")
-	public Page<MemberTeamDto> searchMemberV3(MemberSearchCondition condition, Pageable pageable) {
-		return memberRepository.searchPageComplex(condition, pageable);
+	public CompletableFuture<Page<MemberTeamDto>> searchMemberV3(MemberSearchCondition condition, Pageable pageable) {
+		return bulkheads.submit(Bulkhead.PAGE,
+				() -> searchResultCache.page("v3", condition, pageable, () -> memberRepository.searchPageComplex(condition, pageable)));
+	}
+	
+	// http://localhost:8080/v4/members?teamName=teamA&size=8&sort=age,desc&cursor={이전 응답의 nextCursor}
+	@GetMapping("/v4/members")
+	public CompletableFuture<MemberCursorPage> searchMemberV4(MemberSearchCondition condition,
+			@RequestParam(required = false) String cursor, Pageable pageable) {
+		return bulkheads.submit(Bulkhead.PAGE, () -> memberRepository.searchByCursor(condition, cursor, pageable));
+	}
+	
+	// http://localhost:8080/v1/members/username?keyword=member1&match=contains&limit=20
+	@GetMapping("/v1/members/username")
+	public CompletableFuture<List<MemberTeamDto>> searchMemberByUsername(@RequestParam String keyword,
+			@RequestParam(defaultValue = "prefix") String match, @RequestParam(defaultValue = "20") int limit) {
+		UsernameMatch usernameMatch;
+		try {
+			usernameMatch = UsernameMatch.of(match);
+		} catch (IllegalArgumentException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+		}
+		return bulkheads.submit(Bulkhead.PAGE, () -> memberRepository.searchByUsername(usernameMatch, keyword, limit));
+	}
+	
+	@ExceptionHandler(InvalidCursorException.class)
+	@ResponseStatus(HttpStatus.BAD_REQUEST)
+	public String invalidCursor(InvalidCursorException e) {
+		return e.getMessage();
+	}
+	
+	@ExceptionHandler(RejectedExecutionException.class)
+	@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+	public String rejected(RejectedExecutionException e) {
+		return e.getMessage();
 	}
 }
@@ -0,0 +1,84 @@
+package study.querydsl.controller;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import study.querydsl.dto.MemberTeamDto;
+
+/**
+ * MemberTeamDto를 한 줄씩 바로 응답에 쓴다. (NDJSON 또는 CSV)
+ */
+public class MemberExportWriter {
+
+	private static final String CSV_HEADER = "memberId,username,age,teamId,teamName\n";
+
+	private final MemberFileFormat format;
+	private final Writer writer;
+	private final ObjectWriter jsonWriter;
+
+	public MemberExportWriter(MemberFileFormat format, Writer writer, ObjectMapper objectMapper) {
+		this.format = format;
+		this.writer = writer;
+		// writeValue가 응답 Writer를 닫지 않도록 한다.
+		this.jsonWriter = objectMapper.writerFor(MemberTeamDto.class).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+	}
+
+	public void writeHeader() {
+		if (format == MemberFileFormat.CSV) {
+			append(CSV_HEADER);
+		}
+	}
+
+	public void write(MemberTeamDto dto) {
+		try {
+			if (format == MemberFileFormat.NDJSON) {
+				jsonWriter.writeValue(writer, dto);
+				writer.write('\n');
+			} else {
+				writer.write(String.valueOf(dto.getMemberId()));
+				writer.write(',');
+				writer.write(csv(dto.getUsername()));
+				writer.write(',');
+				writer.write(String.valueOf(dto.getAge()));
+				writer.write(',');
+				writer.write(dto.getTeamId() != null ? String.valueOf(dto.getTeamId()) : "");
+				writer.write(',');
+				writer.write(csv(dto.getTeamName()));
+				writer.write('\n');
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public void flush() {
+		try {
+			writer.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void append(String value) {
+		try {
+			writer.write(value);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static String csv(String value) {
+		if (value == null) {
+			return "";
+		}
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+			return value;
+		}
+		return '"' + value.replace("\"", "\"\"") + '"';
+	}
+}
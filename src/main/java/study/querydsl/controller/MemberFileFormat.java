@@ -0,0 +1,29 @@
+package study.querydsl.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import lombok.Getter;
+
+/**
+ * 회원 export/import 파일 형식
+ */
+@Getter
+public enum MemberFileFormat {
+	NDJSON("application/x-ndjson"), CSV("text/csv");
+
+	private final String contentType;
+
+	MemberFileFormat(String contentType) {
+		this.contentType = contentType;
+	}
+
+	public static MemberFileFormat of(String format) {
+		for (MemberFileFormat value : values()) {
+			if (value.name().equalsIgnoreCase(format)) {
+				return value;
+			}
+		}
+		throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "지원하지 않는 파일 형식입니다: " + format);
+	}
+}
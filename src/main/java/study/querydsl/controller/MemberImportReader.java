@@ -0,0 +1,109 @@
+package study.querydsl.controller;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import study.querydsl.dto.MemberImportRow;
+
+/**
+ * 요청 본문을 한 줄씩 읽어서 MemberImportRow로 넘긴다. (전체를 메모리에 올리지 않는다)
+ * CSV는 username,age,teamName 순서이고, 첫 줄이 헤더면 건너뛴다.
+ */
+public class MemberImportReader implements Iterator<MemberImportRow> {
+
+	private static final String CSV_HEADER = "username,age,teamName";
+
+	private final MemberFileFormat format;
+	private final BufferedReader reader;
+	private final ObjectReader jsonReader;
+	private String nextLine;
+	private long lineNumber;
+
+	public MemberImportReader(MemberFileFormat format, BufferedReader reader, ObjectMapper objectMapper) {
+		this.format = format;
+		this.reader = reader;
+		this.jsonReader = objectMapper.readerFor(MemberImportRow.class);
+		advance();
+		if (format == MemberFileFormat.CSV && nextLine != null && nextLine.trim().equals(CSV_HEADER)) {
+			advance();
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		return nextLine != null;
+	}
+
+	@Override
+	public MemberImportRow next() {
+		if (nextLine == null) {
+			throw new NoSuchElementException();
+		}
+		String line = nextLine;
+		long current = lineNumber;
+		advance();
+		try {
+			return format == MemberFileFormat.NDJSON ? jsonReader.readValue(line) : parseCsv(line);
+		} catch (IOException | RuntimeException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, current + "번째 줄을 읽을 수 없습니다: " + line, e);
+		}
+	}
+
+	// 빈 줄은 건너뛴다.
+	private void advance() {
+		try {
+			do {
+				nextLine = reader.readLine();
+				lineNumber++;
+			} while (nextLine != null && nextLine.trim().isEmpty());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static MemberImportRow parseCsv(String line) {
+		List<String> columns = splitCsv(line);
+		String teamName = columns.size() > 2 && !columns.get(2).isEmpty() ? columns.get(2) : null;
+		return new MemberImportRow(columns.get(0), Integer.parseInt(columns.get(1).trim()), teamName);
+	}
+
+	// MemberExportWriter와 같은 규칙: 쉼표나 따옴표가 있는 값은 "로 감싸고 "는 ""로 쓴다.
+	private static List<String> splitCsv(String line) {
+		List<String> columns = new ArrayList<>();
+		StringBuilder column = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (quoted) {
+				if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					column.append('"');
+					i++;
+				} else if (c == '"') {
+					quoted = false;
+				} else {
+					column.append(c);
+				}
+			} else if (c == '"') {
+				quoted = true;
+			} else if (c == ',') {
+				columns.add(column.toString());
+				column.setLength(0);
+			} else {
+				column.append(c);
+			}
+		}
+		columns.add(column.toString());
+		return columns;
+	}
+}
@@ -0,0 +1,40 @@
+package study.querydsl.controller;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import lombok.RequiredArgsConstructor;
+import study.querydsl.metrics.QueryMetricsRegistry;
+import study.querydsl.metrics.QueryStats;
+
+@RestController
+@RequiredArgsConstructor
+public class QueryMetricsController {
+
+	private final ObjectProvider<QueryMetricsRegistry> queryMetricsRegistry;
+	private final SearchBulkheads bulkheads;
+
+	// (리포지토리 메서드, 연산, JPQL)별 지연 시간, row 수, SQL 수. 총 소요 시간이 큰 순서
+	@GetMapping("/metrics/queries")
+	public List<QueryStats> queries() {
+		QueryMetricsRegistry registry = queryMetricsRegistry.getIfAvailable();
+		return registry != null ? registry.snapshot() : Collections.emptyList();
+	}
+
+	@DeleteMapping("/metrics/queries")
+	public void reset() {
+		queryMetricsRegistry.ifAvailable(QueryMetricsRegistry::reset);
+	}
+
+	// 검색 bulkhead별 실행 중/대기/완료/거절 수
+	@GetMapping("/metrics/bulkheads")
+	public Map<String, SearchBulkheads.BulkheadStats> bulkheads() {
+		return bulkheads.stats();
+	}
+}
@@ -0,0 +1,95 @@
+package study.querydsl.controller;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import study.querydsl.metrics.SqlRecording;
+
+/**
+ * 검색 endpoint 종류별 전용 스레드 풀 (bulkhead)
+ *
+ * - SCAN: 결과 전체를 읽는 검색 (/v1, /v1/members/export)
+ * - PAGE: 페이지 단위 검색 (/v2, /v3, /v4)
+ *
+ * 풀과 큐가 가득 차면 기다리지 않고 RejectedExecutionException으로 거절한다. (MemberController에서 503)
+ * 느린 SCAN 검색이 몰려도 요청 스레드와 커넥션은 SCAN 풀 크기만큼만 사용하므로 PAGE 검색은 영향을 받지 않는다.
+ * 두 풀 크기의 합은 커넥션 풀 크기보다 작게 잡는다.
+ */
+@Component
+public class SearchBulkheads {
+
+	public enum Bulkhead {
+		SCAN, PAGE
+	}
+
+	private final Map<Bulkhead, ThreadPoolExecutor> executors = new EnumMap<>(Bulkhead.class);
+	private final Map<Bulkhead, AtomicLong> rejected = new EnumMap<>(Bulkhead.class);
+
+	public SearchBulkheads(
+			@Value("${member.search-bulkhead.scan.pool-size:2}") int scanPoolSize,
+			@Value("${member.search-bulkhead.scan.queue-capacity:8}") int scanQueueCapacity,
+			@Value("${member.search-bulkhead.page.pool-size:6}") int pagePoolSize,
+			@Value("${member.search-bulkhead.page.queue-capacity:32}") int pageQueueCapacity) {
+		register(Bulkhead.SCAN, scanPoolSize, scanQueueCapacity);
+		register(Bulkhead.PAGE, pagePoolSize, pageQueueCapacity);
+	}
+
+	private void register(Bulkhead bulkhead, int poolSize, int queueCapacity) {
+		AtomicLong rejectedCount = new AtomicLong();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(queueCapacity),
+				new CustomizableThreadFactory("search-" + bulkhead.name().toLowerCase() + "-"),
+				(task, pool) -> {
+					rejectedCount.incrementAndGet();
+					throw new RejectedExecutionException(bulkhead + " 검색이 밀려 있습니다. 잠시 후 다시 시도하세요.");
+				});
+		executors.put(bulkhead, executor);
+		rejected.put(bulkhead, rejectedCount);
+	}
+
+	/**
+	 * @throws RejectedExecutionException 풀과 큐가 가득 찬 경우
+	 */
+	public <T> CompletableFuture<T> submit(Bulkhead bulkhead, Supplier<T> search) {
+		return CompletableFuture.supplyAsync(SqlRecording.propagate(search), executors.get(bulkhead));
+	}
+
+	public Map<String, BulkheadStats> stats() {
+		Map<String, BulkheadStats> stats = new LinkedHashMap<>();
+		executors.forEach((bulkhead, executor) -> stats.put(bulkhead.name(), new BulkheadStats(
+				executor.getMaximumPoolSize(), executor.getActiveCount(), executor.getQueue().size(),
+				executor.getCompletedTaskCount(), rejected.get(bulkhead).get())));
+		return stats;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executors.values().forEach(ThreadPoolExecutor::shutdownNow);
+	}
+
+	@Getter
+	@RequiredArgsConstructor
+	public static class BulkheadStats {
+		private final int poolSize;
+		private final int active;
+		private final int queued;
+		private final long completed;
+		private final long rejected;
+	}
+}
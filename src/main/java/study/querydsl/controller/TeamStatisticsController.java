@@ -0,0 +1,33 @@
+package study.querydsl.controller;
+
+import java.util.List;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import lombok.RequiredArgsConstructor;
+import study.querydsl.dto.TeamStatistics;
+import study.querydsl.repository.TeamStatisticsStore;
+
+/**
+ * 팀별 회원 수, 나이 합계/평균/최소/최대 (group by 집계 없이 TeamStatisticsStore에서 바로 응답)
+ */
+@RestController
+@RequiredArgsConstructor
+public class TeamStatisticsController {
+
+	private final TeamStatisticsStore teamStatisticsStore;
+
+	@GetMapping("/teams/statistics")
+	public List<TeamStatistics> statistics() {
+		return teamStatisticsStore.getAll();
+	}
+
+	@GetMapping("/teams/{teamId}/statistics")
+	public ResponseEntity<TeamStatistics> statistics(@PathVariable Long teamId) {
+		TeamStatistics statistics = teamStatisticsStore.get(teamId);
+		return statistics != null ? ResponseEntity.ok(statistics) : ResponseEntity.notFound().build();
+	}
+}
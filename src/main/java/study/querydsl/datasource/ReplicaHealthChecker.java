@@ -0,0 +1,97 @@
+package study.querydsl.datasource;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.StringUtils;
+
+import lombok.extern.slf4j.Slf4j;
+import study.querydsl.datasource.ReplicaRoutingDataSource.Replica;
+
+/**
+ * replica 연결과 복제 지연을 주기적으로 확인해서 ReplicaRoutingDataSource에 반영한다.
+ *
+ * lagQuery는 첫 번째 컬럼에 지연 시간(초)을 돌려주는 SQL이다. 없으면 연결만 확인한다.
+ * (ex. PostgreSQL: select extract(epoch from now() - pg_last_xact_replay_timestamp()))
+ * ReplicaRoutingDataSource는 빈이 아니므로 종료할 때 커넥션 풀도 같이 닫는다.
+ */
+@Slf4j
+public class ReplicaHealthChecker implements InitializingBean, DisposableBean {
+
+	private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+	private final ReplicaRoutingDataSource routingDataSource;
+	private final String lagQuery;
+	private final Duration interval;
+	private ScheduledExecutorService scheduler;
+
+	public ReplicaHealthChecker(ReplicaRoutingDataSource routingDataSource, String lagQuery, Duration interval) {
+		this.routingDataSource = routingDataSource;
+		this.lagQuery = lagQuery;
+		this.interval = interval;
+	}
+
+	@Override
+	public void afterPropertiesSet() {
+		checkAll();
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("replica-health-");
+		threadFactory.setDaemon(true);
+		scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+		scheduler.scheduleWithFixedDelay(this::checkAll, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	public void checkAll() {
+		for (Replica replica : routingDataSource.getReplicas()) {
+			check(replica);
+		}
+	}
+
+	private void check(Replica replica) {
+		try (Connection connection = replica.getDataSource().getConnection()) {
+			if (!connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+				markUnhealthy(replica, "연결이 유효하지 않음");
+				return;
+			}
+			routingDataSource.updateStatus(replica.getName(), true, lagOf(connection));
+		} catch (SQLException | RuntimeException e) {
+			markUnhealthy(replica, e.getMessage());
+		}
+	}
+
+	private Duration lagOf(Connection connection) throws SQLException {
+		if (!StringUtils.hasText(lagQuery)) {
+			return null;
+		}
+		try (Statement statement = connection.createStatement();
+				ResultSet rs = statement.executeQuery(lagQuery)) {
+			if (!rs.next() || rs.getObject(1) == null) {
+				return null;
+			}
+			return Duration.ofMillis((long) (rs.getDouble(1) * 1000));
+		}
+	}
+
+	private void markUnhealthy(Replica replica, String reason) {
+		if (replica.isHealthy()) {
+			log.warn("replica {} 제외: {}", replica.getName(), reason);
+		}
+		routingDataSource.updateStatus(replica.getName(), false, null);
+	}
+
+	@Override
+	public void destroy() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+		routingDataSource.close();
+	}
+}
@@ -0,0 +1,57 @@
+package study.querydsl.datasource;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * primary(spring.datasource) + replica 라우팅 설정 (member.datasource.routing.enabled=true)
+ *
+ * replica는 primary와 같은 계정으로 member.datasource.routing.replica-urls에 접속한다.
+ * 스키마 생성(ddl-auto)은 primary에서만 일어나므로 replica는 복제로 스키마를 받아야 한다.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "member.datasource.routing", name = "enabled")
+public class ReplicaRoutingConfig {
+
+	/*
+	 * DataSource 빈은 하나만 등록한다. (DataSource 빈마다 스키마 초기화가 붙기 때문)
+	 * ReplicaRoutingDataSource는 dataSource.unwrap(ReplicaRoutingDataSource.class)로 꺼낸다.
+	 */
+	@Bean
+	public DataSource dataSource(DataSourceProperties properties,
+			@Value("${member.datasource.routing.replica-urls}") String[] replicaUrls,
+			@Value("${member.datasource.routing.max-lag:5s}") Duration maxLag) {
+		Map<String, DataSource> replicas = new LinkedHashMap<>();
+		for (int i = 0; i < replicaUrls.length; i++) {
+			replicas.put("replica-" + (i + 1), DataSourceBuilder.create()
+					.driverClassName(properties.determineDriverClassName())
+					.url(replicaUrls[i].trim())
+					.username(properties.determineUsername())
+					.password(properties.determinePassword())
+					.build());
+		}
+		ReplicaRoutingDataSource routingDataSource = new ReplicaRoutingDataSource(
+				properties.initializeDataSourceBuilder().build(), replicas, maxLag);
+		routingDataSource.afterPropertiesSet();
+		return new LazyConnectionDataSourceProxy(routingDataSource);
+	}
+
+	@Bean
+	public ReplicaHealthChecker replicaHealthChecker(DataSource dataSource,
+			@Value("${member.datasource.routing.lag-query:}") String lagQuery,
+			@Value("${member.datasource.routing.health-check-interval:10s}") Duration interval) throws SQLException {
+		return new ReplicaHealthChecker(dataSource.unwrap(ReplicaRoutingDataSource.class), lagQuery, interval);
+	}
+}
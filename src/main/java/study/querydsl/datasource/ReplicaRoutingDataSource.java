@@ -0,0 +1,145 @@
+package study.querydsl.datasource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 읽기 전용 트랜잭션(@Transactional(readOnly = true))은 replica로, 나머지는 primary로 보낸다.
+ *
+ * replica는 돌아가면서 사용하고, ReplicaHealthChecker가 연결할 수 없거나 지연(lag)이 maxLag를 넘었다고 표시한
+ * replica는 건너뛴다. 사용할 replica가 없으면 primary에서 읽는다.
+ *
+ * 트랜잭션의 readOnly 여부는 트랜잭션 시작 후에 정해지므로 LazyConnectionDataSourceProxy로 감싸서
+ * 첫 SQL을 실행할 때 커넥션을 고르게 해야 한다.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+	public static final String PRIMARY = "primary";
+
+	private final DataSource primary;
+	private final List<Replica> replicas = new ArrayList<>();
+	private final Duration maxLag;
+	private final AtomicInteger next = new AtomicInteger();
+	private final Map<String, LongAdder> routed = new LinkedHashMap<>();
+
+	/**
+	 * @param replicas 이름 -> replica DataSource
+	 */
+	public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, Duration maxLag) {
+		this.primary = primary;
+		this.maxLag = maxLag;
+		Map<Object, Object> targets = new HashMap<>(replicas);
+		targets.put(PRIMARY, primary);
+		setTargetDataSources(targets);
+		setDefaultTargetDataSource(primary);
+		routed.put(PRIMARY, new LongAdder());
+		replicas.forEach((name, dataSource) -> {
+			this.replicas.add(new Replica(name, dataSource));
+			routed.put(name, new LongAdder());
+		});
+	}
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+		String key = TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? nextReplica() : PRIMARY;
+		routed.get(key).increment();
+		return key;
+	}
+
+	private String nextReplica() {
+		int size = replicas.size();
+		int start = Math.floorMod(next.getAndIncrement(), Math.max(size, 1));
+		for (int i = 0; i < size; i++) {
+			Replica replica = replicas.get((start + i) % size);
+			if (replica.isAvailable(maxLag)) {
+				return replica.getName();
+			}
+		}
+		return PRIMARY;
+	}
+
+	/**
+	 * ReplicaHealthChecker가 확인한 결과를 반영한다.
+	 *
+	 * @param lag 알 수 없으면 null
+	 */
+	public void updateStatus(String name, boolean healthy, Duration lag) {
+		for (Replica replica : replicas) {
+			if (replica.getName().equals(name)) {
+				replica.healthy = healthy;
+				replica.lag = lag;
+			}
+		}
+	}
+
+	public List<Replica> getReplicas() {
+		return Collections.unmodifiableList(replicas);
+	}
+
+	/**
+	 * @return 대상(primary, replica 이름)별로 커넥션을 가져간 횟수
+	 */
+	public Map<String, Long> getRoutedCounts() {
+		Map<String, Long> counts = new LinkedHashMap<>();
+		routed.forEach((key, count) -> counts.put(key, count.sum()));
+		return counts;
+	}
+
+	/**
+	 * 커넥션 풀을 모두 닫는다. 하나가 실패해도 나머지는 닫는다.
+	 */
+	@Override
+	public void close() {
+		close(PRIMARY, primary);
+		for (Replica replica : replicas) {
+			close(replica.getName(), replica.getDataSource());
+		}
+	}
+
+	private static void close(String name, DataSource dataSource) {
+		if (!(dataSource instanceof AutoCloseable)) {
+			return;
+		}
+		try {
+			((AutoCloseable) dataSource).close();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			log.warn("{} 커넥션 풀을 닫지 못했습니다.", name, e);
+		}
+	}
+
+	@Getter
+	public static class Replica {
+		private final String name;
+		private final DataSource dataSource;
+		private volatile boolean healthy = true;
+		private volatile Duration lag;
+
+		Replica(String name, DataSource dataSource) {
+			this.name = name;
+			this.dataSource = dataSource;
+		}
+
+		boolean isAvailable(Duration maxLag) {
+			Duration current = lag;
+			return healthy && (current == null || current.compareTo(maxLag) <= 0);
+		}
+	}
+}
@@ -0,0 +1,14 @@
+package study.querydsl.dto;
+
+import java.util.List;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public class MemberCursorPage {
+	private final List<MemberTeamDto> content;
+	private final String nextCursor; // 다음 페이지가 없으면 null
+	private final boolean hasNext;
+}
@@ -0,0 +1,18 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public class MemberImportResult {
+	private final long rows;
+	private final long inserted;
+	private final long updated;
+	private final long teamsCreated;
+	private final long elapsedMillis;
+
+	public double getRowsPerSecond() {
+		return elapsedMillis == 0 ? rows : rows * 1000.0 / elapsedMillis;
+	}
+}
@@ -1,5 +1,7 @@
 package study.querydsl.dto;
 
+import static org.springframework.util.StringUtils.hasText;
+
 import lombok.Data;
 
 @Data
@@ -9,4 +11,14 @@ public class MemberSearchCondition {
 	private String teamName;
 	private Integer ageGoe;
 	private Integer ageLoe;
+	
+	// 검색 결과에 영향이 없는 차이(빈 문자열 등)를 없앤 사본. 캐시 키로 사용한다.
+	public MemberSearchCondition normalized() {
+		MemberSearchCondition normalized = new MemberSearchCondition();
+		normalized.setUsername(hasText(username) ? username : null);
+		normalized.setTeamName(hasText(teamName) ? teamName : null);
+		normalized.setAgeGoe(ageGoe);
+		normalized.setAgeLoe(ageLoe);
+		return normalized;
+	}
 }
\ No newline at end of file
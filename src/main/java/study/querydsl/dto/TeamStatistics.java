@@ -0,0 +1,21 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class TeamStatistics {
+	private final Long teamId;
+	private final String teamName;
+	private final long count;
+	private final long ageSum;
+	private final int minAge;
+	private final int maxAge;
+
+	public double getAverageAge() {
+		return count == 0 ? 0 : (double) ageSum / count;
+	}
+}
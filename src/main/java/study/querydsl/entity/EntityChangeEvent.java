@@ -0,0 +1,22 @@
+package study.querydsl.entity;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * 엔티티 변경 알림
+ * 영속성 컨텍스트를 통한 변경(flush 시점)과 벌크 연산(execute 시점) 모두 발행된다.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class EntityChangeEvent {
+
+	public enum Type {
+		PERSIST, UPDATE, REMOVE, BULK
+	}
+
+	private final Class<?> entityType;
+	private final Type type;
+}
@@ -0,0 +1,43 @@
+package study.querydsl.entity;
+
+import javax.persistence.PostUpdate;
+import javax.persistence.PrePersist;
+import javax.persistence.PreRemove;
+
+import org.hibernate.Hibernate;
+import org.springframework.context.ApplicationEventPublisher;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * JPA 엔티티 콜백을 EntityChangeEvent로 발행한다.
+ * Hibernate가 SpringBeanContainer를 통해 생성하므로 생성자 주입을 받을 수 있다.
+ *
+ * persist/remove는 flush를 기다리지 않고 호출 시점(Pre*)에 알린다.
+ * 같은 트랜잭션에서 flush 전에 캐시된 결과를 읽는 일이 없도록 하기 위함이다.
+ * 변경 감지는 flush 시점에만 알 수 있으므로 update는 PostUpdate를 사용한다.
+ */
+@RequiredArgsConstructor
+public class EntityChangeListener {
+
+	private final ApplicationEventPublisher publisher;
+
+	@PrePersist
+	public void prePersist(Object entity) {
+		publish(entity, EntityChangeEvent.Type.PERSIST);
+	}
+
+	@PostUpdate
+	public void postUpdate(Object entity) {
+		publish(entity, EntityChangeEvent.Type.UPDATE);
+	}
+
+	@PreRemove
+	public void preRemove(Object entity) {
+		publish(entity, EntityChangeEvent.Type.REMOVE);
+	}
+
+	private void publish(Object entity, EntityChangeEvent.Type type) {
+		publisher.publishEvent(new EntityChangeEvent(Hibernate.getClass(entity), type));
+	}
+}
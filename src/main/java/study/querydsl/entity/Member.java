@@ -2,11 +2,20 @@ package study.querydsl.entity;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+
+import org.hibernate.Hibernate;
 
 import lombok.AccessLevel;
 import lombok.Getter;
@@ -15,12 +24,22 @@ import lombok.Setter;
 import lombok.ToString;
 
 @Entity
+@NamedEntityGraph(name = "Member.team", attributeNodes = @NamedAttributeNode("team"))
+@Table(indexes = {
+		@Index(name = "idx_member_username", columnList = "username"),
+		// (team_id, age) 조건 + MemberTeamDto 조회 컬럼(member_id는 PK라 포함된다)까지 덮는 covering index
+		@Index(name = "idx_member_team_age_username", columnList = "team_id, age, username"),
+		@Index(name = "idx_member_age", columnList = "age")
+})
+@EntityListeners(EntityChangeListener.class)
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "username", "age"})
 public class Member {
 
-	@Id @GeneratedValue
+	// allocationSize만큼 id를 미리 받아서 insert마다 시퀀스를 조회하지 않는다. (JDBC batch insert 가능)
+	@Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq_generator")
+	@SequenceGenerator(name = "member_seq_generator", sequenceName = "member_seq", allocationSize = 50)
 	@Column(name="member_id")
 	private Long id;
 	private String username;
@@ -46,8 +65,13 @@ public class Member {
 		}
 	}
 	
+	// 팀의 members 컬렉션은 읽지 않는다. (Team.addMember, Team.removeMember)
 	public void changeTeam(Team team) {
+		// 읽지 않은 팀 프록시는 members도 읽지 않은 상태이므로 팀을 읽지 않고 넘어간다.
+		if (this.team != null && Hibernate.isInitialized(this.team)) {
+			this.team.removeMember(this);
+		}
 		this.team = team;
-		team.getMembers().add(this);
+		team.addMember(this);
 	}
 }
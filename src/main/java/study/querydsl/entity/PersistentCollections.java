@@ -0,0 +1,28 @@
+package study.querydsl.entity;
+
+import java.util.Collection;
+
+import org.hibernate.collection.internal.AbstractPersistentCollection;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+/**
+ * 엔티티의 Hibernate 컬렉션 래퍼 상태 확인
+ * 5.4의 공개 SPI(PersistentCollection)는 컬렉션이 붙어 있는 세션을 알려주지 않으므로 여기서만 AbstractPersistentCollection을 사용한다.
+ */
+final class PersistentCollections {
+
+	private PersistentCollections() {
+	}
+
+	/**
+	 * 열린 세션에 붙어 있는 컬렉션인지
+	 * Hibernate는 이 경우에만 읽지 않은 mappedBy 컬렉션의 add를 쌓아 둔다. 아니면 add가 컬렉션을 읽으려다 실패한다.
+	 */
+	static boolean isConnected(Collection<?> collection) {
+		if (!(collection instanceof AbstractPersistentCollection)) {
+			return false;
+		}
+		SharedSessionContractImplementor session = ((AbstractPersistentCollection) collection).getSession();
+		return session != null && session.isOpen();
+	}
+}
@@ -5,9 +5,20 @@ import java.util.List;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.OneToMany;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.LazyCollection;
+import org.hibernate.annotations.LazyCollectionOption;
 
 import lombok.AccessLevel;
 import lombok.Getter;
@@ -16,20 +27,45 @@ import lombok.Setter;
 import lombok.ToString;
 
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE) // 작고 거의 바뀌지 않는 테이블이므로 2차 캐시 사용
+@Table(indexes = @Index(name = "idx_team_name", columnList = "name"))
+@EntityListeners(EntityChangeListener.class)
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "name"})
 public class Team {
 
-	@Id @GeneratedValue
+	@Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "team_seq_generator")
+	@SequenceGenerator(name = "team_seq_generator", sequenceName = "team_seq", allocationSize = 50)
 	@Column(name="team_id")
 	private Long id;
 	private String name;
 	
+	// size(), contains()는 컬렉션을 읽지 않고 count, exists 쿼리로 처리한다. 페이지 단위 조회는 TeamMemberRepository
 	@OneToMany(mappedBy="team")
+	@LazyCollection(LazyCollectionOption.EXTRA)
 	private List<Member> members = new ArrayList<>();
 
 	public Team(String name) {
 		this.name = name;
 	}
+	
+	/*
+	 * Member.changeTeam에서 사용한다. members를 읽지 않고 양쪽을 맞춘다.
+	 * - 읽지 않은 컬렉션에 add하면 Hibernate가 쌓아 두었다가 컬렉션을 읽을 때 반영한다. (mappedBy 쪽 bag)
+	 * - remove는 읽은 컬렉션에서만 한다. 읽지 않은 컬렉션은 나중에 읽을 때 DB에서 읽으므로
+	 *   flush 전에 읽으면 빠진 회원이 남아 있다. (size(), contains()와 TeamMemberRepository는 flush 후 조회한다)
+	 * - 세션이 닫힌 엔티티의 읽지 않은 컬렉션은 읽을 수 없으므로 건드리지 않는다. (PersistentCollections.isConnected)
+	 */
+	public void addMember(Member member) {
+		if (Hibernate.isInitialized(members) || PersistentCollections.isConnected(members)) {
+			members.add(member);
+		}
+	}
+	
+	public void removeMember(Member member) {
+		if (Hibernate.isInitialized(members)) {
+			members.remove(member);
+		}
+	}
 }
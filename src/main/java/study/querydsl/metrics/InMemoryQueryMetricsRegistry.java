@@ -0,0 +1,88 @@
+package study.querydsl.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * (리포지토리 메서드, 연산, fingerprint)별 지표를 메모리에 누적한다.
+ * fingerprint 종류가 너무 많아지지 않도록 maxShapes를 넘으면 새 shape은 버린다.
+ */
+public class InMemoryQueryMetricsRegistry implements QueryMetricsRegistry {
+
+	private final int maxShapes;
+	private final ConcurrentMap<Key, Shape> shapes = new ConcurrentHashMap<>();
+	private final LongAdder dropped = new LongAdder();
+
+	public InMemoryQueryMetricsRegistry(int maxShapes) {
+		this.maxShapes = maxShapes;
+	}
+
+	@Override
+	public void record(QueryExecution execution) {
+		Key key = new Key(execution.getRepositoryMethod(), execution.getOperation(), execution.getFingerprint());
+		Shape shape = shapes.get(key);
+		if (shape == null) {
+			if (shapes.size() >= maxShapes) {
+				dropped.increment();
+				return;
+			}
+			shape = shapes.computeIfAbsent(key, k -> new Shape());
+		}
+		shape.latency.record(execution.getElapsedNanos());
+		shape.rows.add(execution.getRows());
+		shape.statements.add(execution.getStatements());
+	}
+
+	@Override
+	public List<QueryStats> snapshot() {
+		List<QueryStats> result = new ArrayList<>(shapes.size());
+		for (Map.Entry<Key, Shape> entry : shapes.entrySet()) {
+			Key key = entry.getKey();
+			LatencyHistogram latency = entry.getValue().latency;
+			result.add(new QueryStats(key.repositoryMethod, key.operation, normalize(key.fingerprint),
+					latency.getCount(), latency.getMeanMillis(),
+					latency.getPercentileMillis(50), latency.getPercentileMillis(95), latency.getPercentileMillis(99),
+					latency.getMaxMillis(), entry.getValue().rows.sum(), entry.getValue().statements.sum(),
+					latency.getBuckets()));
+		}
+		// 총 소요 시간이 큰 순서
+		result.sort(Comparator.comparingDouble((QueryStats stats) -> stats.getMeanMillis() * stats.getCount()).reversed());
+		return result;
+	}
+
+	@Override
+	public void reset() {
+		shapes.clear();
+		dropped.reset();
+	}
+
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	private static String normalize(String jpql) {
+		return jpql != null ? jpql.replaceAll("\\s+", " ").trim() : null;
+	}
+
+	@EqualsAndHashCode
+	@RequiredArgsConstructor
+	private static class Key {
+		private final String repositoryMethod;
+		private final String operation;
+		private final String fingerprint;
+	}
+
+	private static class Shape {
+		private final LatencyHistogram latency = new LatencyHistogram();
+		private final LongAdder rows = new LongAdder();
+		private final LongAdder statements = new LongAdder();
+	}
+}
@@ -0,0 +1,20 @@
+package study.querydsl.metrics;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * 쿼리 한 번 실행한 결과
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class QueryExecution {
+	private final String repositoryMethod; // 리포지토리 밖에서 실행되면 null
+	private final String operation; // fetch, fetchCount, fetchResults, fetchOne, execute
+	private final String fingerprint; // 파라미터가 ?로 바뀐 JPQL
+	private final long elapsedNanos;
+	private final long rows; // 조회 row 수 또는 벌크 연산 영향 row 수
+	private final long statements; // 실행된 SQL 문 수 (auto flush 포함)
+}
@@ -0,0 +1,68 @@
+package study.querydsl.metrics;
+
+import java.lang.reflect.Method;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.repository.Repository;
+
+/**
+ * 쿼리 실행 지표 수집 설정 (member.query-metrics.enabled=false로 끌 수 있다)
+ *
+ * - 리포지토리 메서드 이름: @Repository 빈과 Spring Data 리포지토리에 RepositoryMethodInterceptor 적용
+ * - SQL 문 수: Hibernate StatementInspector(SqlStatementCounter)
+ * - 실행 시간/row 수: TrackingJPAQueryFactory가 QueryMetricsRegistry에 기록
+ * - 요청별 SQL budget: SqlBudgetFilter (member.sql-budget.enabled)
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "member.query-metrics", name = "enabled", matchIfMissing = true)
+public class QueryMetricsConfig {
+
+	@Bean
+	public QueryMetricsRegistry queryMetricsRegistry(@Value("${member.query-metrics.max-shapes:500}") int maxShapes) {
+		return new InMemoryQueryMetricsRegistry(maxShapes);
+	}
+
+	@Bean
+	public HibernatePropertiesCustomizer sqlStatementCounter() {
+		return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new SqlStatementCounter());
+	}
+
+	@Bean
+	@ConditionalOnProperty(prefix = "member.sql-budget", name = "enabled")
+	public FilterRegistrationBean<SqlBudgetFilter> sqlBudgetFilter(
+			@Value("${member.sql-budget.max-statements:50}") int maxStatements,
+			@Value("${member.sql-budget.max-repeats:10}") int maxRepeats,
+			@Value("${member.sql-budget.mode:WARN}") SqlBudget.Mode mode) {
+		FilterRegistrationBean<SqlBudgetFilter> registration = new FilterRegistrationBean<>(
+				new SqlBudgetFilter(new SqlBudget(maxStatements, maxRepeats, mode)));
+		registration.addUrlPatterns("/*");
+		return registration;
+	}
+
+	// @Transactional과 같은 infrastructure advisor로 등록해야 AOP starter 없이 auto proxy 대상이 된다.
+	@Bean
+	@Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+	public static Advisor repositoryMethodAdvisor() {
+		StaticMethodMatcherPointcut pointcut = new StaticMethodMatcherPointcut() {
+			@Override
+			public boolean matches(Method method, Class<?> targetClass) {
+				return method.getDeclaringClass() != Object.class;
+			}
+		};
+		pointcut.setClassFilter(type -> Repository.class.isAssignableFrom(type)
+				|| AnnotatedElementUtils.hasAnnotation(type, org.springframework.stereotype.Repository.class));
+		return new DefaultPointcutAdvisor(pointcut, new RepositoryMethodInterceptor());
+	}
+}
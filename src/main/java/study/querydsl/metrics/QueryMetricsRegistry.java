@@ -0,0 +1,19 @@
+package study.querydsl.metrics;
+
+import java.util.List;
+
+/**
+ * 쿼리 실행 지표 저장소
+ * 기본은 메모리 구현(InMemoryQueryMetricsRegistry)이고, 다른 구현을 빈으로 등록하면 그것을 사용한다.
+ */
+public interface QueryMetricsRegistry {
+
+	void record(QueryExecution execution);
+
+	/**
+	 * @return (리포지토리 메서드, 연산, fingerprint)별 누적 지표
+	 */
+	List<QueryStats> snapshot();
+
+	void reset();
+}
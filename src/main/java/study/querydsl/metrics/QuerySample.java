@@ -0,0 +1,60 @@
+package study.querydsl.metrics;
+
+/**
+ * 쿼리 한 번의 실행 시간과 SQL 수 측정
+ *
+ * 리포지토리 메서드는 쿼리를 만든 시점의 것을 사용한다.
+ * (count 쿼리처럼 다른 스레드에서 실행되더라도 호출한 리포지토리 메서드로 집계된다)
+ */
+public class QuerySample {
+
+	private static final ThreadLocal<String> REPOSITORY_METHOD = new ThreadLocal<>();
+
+	private final String repositoryMethod;
+	private final long startNanos;
+	private final long startStatements;
+
+	private QuerySample(String repositoryMethod) {
+		this.repositoryMethod = repositoryMethod;
+		this.startStatements = SqlStatementCounter.current();
+		this.startNanos = System.nanoTime();
+	}
+
+	/**
+	 * @param repositoryMethod null이면 현재 스레드에서 실행 중인 리포지토리 메서드
+	 */
+	public static QuerySample start(String repositoryMethod) {
+		return new QuerySample(repositoryMethod != null ? repositoryMethod : currentRepositoryMethod());
+	}
+
+	public void stop(QueryMetricsRegistry registry, String operation, String fingerprint, long rows) {
+		long elapsed = System.nanoTime() - startNanos;
+		registry.record(new QueryExecution(repositoryMethod, operation, fingerprint, elapsed, rows,
+				SqlStatementCounter.current() - startStatements));
+	}
+
+	public static String currentRepositoryMethod() {
+		return REPOSITORY_METHOD.get();
+	}
+
+	/**
+	 * 리포지토리 메서드가 다른 리포지토리를 호출하면 바깥 메서드로 기록한다.
+	 * (Spring Data 리포지토리 -> 사용자 정의 구현 클래스 호출도 바깥 인터페이스 이름으로 남는다)
+	 * @return 이전 값. 메서드가 끝나면 exit에 넘겨서 되돌린다.
+	 */
+	static String enter(String repositoryMethod) {
+		String previous = REPOSITORY_METHOD.get();
+		if (previous == null) {
+			REPOSITORY_METHOD.set(repositoryMethod);
+		}
+		return previous;
+	}
+
+	static void exit(String previous) {
+		if (previous == null) {
+			REPOSITORY_METHOD.remove();
+		} else {
+			REPOSITORY_METHOD.set(previous);
+		}
+	}
+}
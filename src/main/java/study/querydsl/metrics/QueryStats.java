@@ -0,0 +1,21 @@
+package study.querydsl.metrics;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public class QueryStats {
+	private final String repositoryMethod;
+	private final String operation;
+	private final String fingerprint;
+	private final long count;
+	private final double meanMillis;
+	private final double p50Millis;
+	private final double p95Millis;
+	private final double p99Millis;
+	private final double maxMillis;
+	private final long rows;
+	private final long statements;
+	private final long[] histogram; // LatencyHistogram.BOUNDS_MILLIS 구간별 건수 (마지막은 그 이상)
+}
@@ -0,0 +1,46 @@
+package study.querydsl.metrics;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.util.ClassUtils;
+
+/**
+ * 리포지토리 메서드 실행 중에 실행된 쿼리가 어느 메서드에서 나왔는지 기록한다.
+ * 이름은 "MemberRepository.search" 형태 (Spring Data 리포지토리는 인터페이스 이름)
+ */
+public class RepositoryMethodInterceptor implements MethodInterceptor {
+
+	// CrudRepository.findById처럼 여러 리포지토리가 공유하는 메서드가 있으므로 대상 클래스별로 캐시한다.
+	private final ConcurrentMap<Class<?>, ConcurrentMap<Method, String>> names = new ConcurrentHashMap<>();
+
+	@Override
+	public Object invoke(MethodInvocation invocation) throws Throwable {
+		Object target = invocation.getThis();
+		Class<?> targetClass = target != null ? target.getClass() : invocation.getMethod().getDeclaringClass();
+		String name = names.computeIfAbsent(targetClass, type -> new ConcurrentHashMap<>())
+				.computeIfAbsent(invocation.getMethod(), method -> nameOf(target, method));
+		String previous = QuerySample.enter(name);
+		try {
+			return invocation.proceed();
+		} finally {
+			QuerySample.exit(previous);
+		}
+	}
+
+	private static String nameOf(Object target, Method method) {
+		Class<?> type;
+		if (target != null && Proxy.isProxyClass(target.getClass())) {
+			Class<?>[] interfaces = AopProxyUtils.proxiedUserInterfaces(target);
+			type = interfaces.length > 0 ? interfaces[0] : method.getDeclaringClass();
+		} else {
+			type = target != null ? ClassUtils.getUserClass(target) : method.getDeclaringClass();
+		}
+		return type.getSimpleName() + "." + method.getName();
+	}
+}
@@ -0,0 +1,43 @@
+package study.querydsl.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 한 단위 작업(HTTP 요청 등)에서 허용하는 SQL 수
+ *
+ * maxRepeats는 같은 shape의 SQL이 반복되는 횟수 제한이다.
+ * 지연 로딩 연관관계를 row마다 건드리는 N+1은 statement 총량보다 이 값에서 먼저 드러난다.
+ */
+@Getter
+@RequiredArgsConstructor
+public class SqlBudget {
+
+	public enum Mode {
+		WARN, // 작업이 끝난 뒤 로그를 남긴다.
+		FAIL // 초과하는 SQL을 실행하기 전에 SqlBudgetExceededException
+	}
+
+	private final int maxStatements;
+	private final int maxRepeats;
+	private final Mode mode;
+
+	public boolean allows(int statements, int repeats) {
+		return statements <= maxStatements && repeats <= maxRepeats;
+	}
+
+	public List<String> violations(SqlRecording recording) {
+		List<String> violations = new ArrayList<>();
+		if (recording.getStatementCount() > maxStatements) {
+			violations.add("SQL " + recording.getStatementCount() + "건 (허용 " + maxStatements + "건)");
+		}
+		for (Map.Entry<String, Integer> repeated : recording.getRepeatedShapes(maxRepeats + 1).entrySet()) {
+			violations.add("같은 SQL " + repeated.getValue() + "번 반복 (허용 " + maxRepeats + "번, N+1 의심): " + repeated.getKey());
+		}
+		return violations;
+	}
+}
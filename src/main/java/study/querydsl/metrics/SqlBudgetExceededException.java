@@ -0,0 +1,10 @@
+package study.querydsl.metrics;
+
+public class SqlBudgetExceededException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public SqlBudgetExceededException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,76 @@
+package study.querydsl.metrics;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * HTTP 요청 하나에서 실행된 SQL을 SqlBudget과 비교한다.
+ * WARN 모드면 요청이 끝난 뒤 위반 내용을 로그로 남기고, FAIL 모드면 초과하는 SQL에서 예외가 난다.
+ * 비동기 요청이면 작업 스레드의 SQL까지 모아서(SqlRecording.propagate) 응답이 끝날 때 확인한다.
+ * 시간 초과나 오류로 끝난 요청도 확인한다. (한 번만)
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class SqlBudgetFilter extends OncePerRequestFilter {
+
+	private final SqlBudget budget;
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		try (SqlRecording recording = SqlRecording.start(budget)) {
+			filterChain.doFilter(request, response);
+			if (request.isAsyncStarted()) {
+				AtomicBoolean checked = new AtomicBoolean();
+				request.getAsyncContext().addListener(new AsyncListener() {
+					@Override
+					public void onComplete(AsyncEvent event) {
+						checkOnce();
+					}
+
+					@Override
+					public void onTimeout(AsyncEvent event) {
+						checkOnce();
+					}
+
+					@Override
+					public void onError(AsyncEvent event) {
+						checkOnce();
+					}
+
+					private void checkOnce() {
+						if (checked.compareAndSet(false, true)) {
+							check(request, recording);
+						}
+					}
+
+					@Override
+					public void onStartAsync(AsyncEvent event) {
+					}
+				});
+			} else {
+				check(request, recording);
+			}
+		}
+	}
+
+	private void check(HttpServletRequest request, SqlRecording recording) {
+		List<String> violations = budget.violations(recording);
+		if (!violations.isEmpty()) {
+			log.warn("SQL budget 초과 {} {}: {}", request.getMethod(), request.getRequestURI(), violations);
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package study.querydsl.metrics;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * 현재 스레드에서 실행되는 SQL을 shape별로 센다. (SqlStatementCounter가 호출)
+ *
+ * <pre>
+ * try (SqlRecording recording = SqlRecording.start()) {
+ *     ...
+ *     assertThat(recording.getStatementCount()).isEqualTo(1);
+ * }
+ * </pre>
+ *
+ * 중첩해서 시작하면 안쪽 기록도 바깥 기록에 합산된다.
+ * 비동기로 처리하는 작업은 propagate로 감싸면 작업 스레드의 SQL도 같은 기록에 남는다.
+ */
+public class SqlRecording implements AutoCloseable {
+
+	private static final ThreadLocal<SqlRecording> CURRENT = new ThreadLocal<>();
+
+	private static final Pattern COMMENT = Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
+	private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)+\\s*\\)");
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+	private final SqlRecording parent;
+	private final SqlBudget budget;
+	private final Map<String, Integer> shapes = new LinkedHashMap<>();
+	private int statementCount;
+	private int maxRepeats;
+	private boolean closed;
+
+	private SqlRecording(SqlRecording parent, SqlBudget budget) {
+		this.parent = parent;
+		this.budget = budget;
+	}
+
+	public static SqlRecording start() {
+		return start(null);
+	}
+
+	/**
+	 * @param budget FAIL 모드면 초과하는 SQL을 실행하기 전에 SqlBudgetExceededException을 던진다.
+	 */
+	public static SqlRecording start(SqlBudget budget) {
+		SqlRecording recording = new SqlRecording(CURRENT.get(), budget);
+		CURRENT.set(recording);
+		return recording;
+	}
+
+	/**
+	 * 다른 스레드에서 실행할 작업이 현재 스레드의 기록에 SQL을 남기도록 감싼다.
+	 */
+	public static <T> Supplier<T> propagate(Supplier<T> task) {
+		SqlRecording recording = CURRENT.get();
+		if (recording == null) {
+			return task;
+		}
+		return () -> {
+			SqlRecording previous = CURRENT.get();
+			CURRENT.set(recording);
+			try {
+				return task.get();
+			} finally {
+				if (previous != null) {
+					CURRENT.set(previous);
+				} else {
+					CURRENT.remove();
+				}
+			}
+		};
+	}
+
+	static void recordCurrent(String sql) {
+		SqlRecording recording = CURRENT.get();
+		if (recording != null) {
+			recording.record(shapeOf(sql));
+		}
+	}
+
+	private synchronized void record(String shape) {
+		int repeats = shapes.merge(shape, 1, Integer::sum);
+		statementCount++;
+		maxRepeats = Math.max(maxRepeats, repeats);
+		if (budget != null && budget.getMode() == SqlBudget.Mode.FAIL && !budget.allows(statementCount, maxRepeats)) {
+			throw new SqlBudgetExceededException(String.join(", ", budget.violations(this)));
+		}
+		if (parent != null) {
+			parent.record(shape);
+		}
+	}
+
+	// 주석(use_sql_comments), IN 목록 길이, 공백 차이를 없앤다.
+	static String shapeOf(String sql) {
+		String shape = COMMENT.matcher(sql).replaceAll(" ");
+		shape = IN_LIST.matcher(shape).replaceAll("(?)");
+		return WHITESPACE.matcher(shape).replaceAll(" ").trim();
+	}
+
+	public synchronized int getStatementCount() {
+		return statementCount;
+	}
+
+	/**
+	 * @return 가장 많이 반복된 shape의 실행 횟수
+	 */
+	public synchronized int getMaxRepeats() {
+		return maxRepeats;
+	}
+
+	/**
+	 * @return shape별 실행 횟수 (처음 실행된 순서)
+	 */
+	public synchronized Map<String, Integer> getShapes() {
+		return Collections.unmodifiableMap(new LinkedHashMap<>(shapes));
+	}
+
+	public synchronized Map<String, Integer> getRepeatedShapes(int minRepeats) {
+		Map<String, Integer> repeated = new LinkedHashMap<>();
+		shapes.forEach((shape, count) -> {
+			if (count >= minRepeats) {
+				repeated.put(shape, count);
+			}
+		});
+		return repeated;
+	}
+
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (parent != null) {
+			CURRENT.set(parent);
+		} else {
+			CURRENT.remove();
+		}
+	}
+}
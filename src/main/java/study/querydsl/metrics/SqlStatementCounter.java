@@ -0,0 +1,26 @@
+package study.querydsl.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Hibernate가 실행하는 SQL 문을 스레드별로 센다.
+ * 쿼리 실행 전후 값의 차이가 그 쿼리가 실행한 SQL 수다. (auto flush로 나간 insert/update 포함)
+ * 진행 중인 SqlRecording이 있으면 SQL shape도 기록한다. SQL 문자열은 바꾸지 않는다.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final ThreadLocal<long[]> COUNT = ThreadLocal.withInitial(() -> new long[1]);
+
+	@Override
+	public String inspect(String sql) {
+		COUNT.get()[0]++;
+		SqlRecording.recordCurrent(sql);
+		return sql;
+	}
+
+	public static long current() {
+		return COUNT.get()[0];
+	}
+}
@@ -0,0 +1,20 @@
+package study.querydsl.repository;
+
+/**
+ * 잘못된 keyset 페이징 요청 (커서를 읽을 수 없거나, 커서와 정렬 조건이 다르거나, 지원하지 않는 정렬 조건)
+ *
+ * 리포지토리의 예외 변환(IllegalArgumentException -> InvalidDataAccessApiUsageException) 대상이 아니므로
+ * 컨트롤러에서 그대로 받아 400으로 응답할 수 있다.
+ */
+public class InvalidCursorException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public InvalidCursorException(String message) {
+		super(message);
+	}
+
+	public InvalidCursorException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
@@ -0,0 +1,101 @@
+package study.querydsl.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.springframework.data.domain.Sort;
+
+import lombok.Getter;
+import study.querydsl.dto.MemberTeamDto;
+
+/**
+ * keyset(seek) 페이징 커서
+ * 마지막 row의 정렬 키와 tie-breaker인 member.id를 담아 불투명한 문자열로 인코딩한다.
+ * username은 null일 수 있다. (null은 방향과 상관없이 마지막에 정렬한다, MemberRepositoryImpl.keysetOrder)
+ */
+@Getter
+public class MemberCursor {
+
+	public enum SortKey {
+		ID("id"), USERNAME("username"), AGE("age");
+
+		private final String property;
+
+		SortKey(String property) {
+			this.property = property;
+		}
+
+		public static SortKey of(String property) {
+			for (SortKey key : values()) {
+				if (key.property.equals(property)) {
+					return key;
+				}
+			}
+			throw new InvalidCursorException("keyset 페이징을 지원하지 않는 정렬 조건입니다: " + property);
+		}
+	}
+
+	private final SortKey sortKey;
+	private final boolean ascending;
+	// USERNAME은 null일 수 있다.
+	private final String value;
+	private final long id;
+
+	private MemberCursor(SortKey sortKey, boolean ascending, String value, long id) {
+		this.sortKey = sortKey;
+		this.ascending = ascending;
+		this.value = value;
+		this.id = id;
+	}
+
+	/**
+	 * 정렬 조건의 첫번째 항목만 사용한다. 정렬이 없으면 member.id 오름차순
+	 */
+	public static Sort.Order orderOf(Sort sort) {
+		return sort.stream().findFirst().orElse(Sort.Order.asc(SortKey.ID.property));
+	}
+
+	public static MemberCursor after(MemberTeamDto last, Sort.Order order) {
+		SortKey sortKey = SortKey.of(order.getProperty());
+		String value;
+		switch (sortKey) {
+		case USERNAME:
+			value = last.getUsername();
+			break;
+		case AGE:
+			value = String.valueOf(last.getAge());
+			break;
+		default:
+			value = String.valueOf(last.getMemberId());
+		}
+		return new MemberCursor(sortKey, order.isAscending(), value, last.getMemberId());
+	}
+
+	// sortKey:direction:id:value (value는 ':'를 포함할 수 있으므로 마지막에 둔다. null이면 value와 앞의 ':'를 뺀다)
+	public static MemberCursor decode(String cursor) {
+		try {
+			String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+			String[] parts = decoded.split(":", 4);
+			SortKey sortKey = SortKey.valueOf(parts[0]);
+			String value = parts.length > 3 ? parts[3] : null;
+			if (value == null && sortKey != SortKey.USERNAME) {
+				throw new IllegalArgumentException("값이 없는 커서");
+			}
+			if (sortKey == SortKey.AGE) {
+				Integer.parseInt(value); // 숫자가 아니면 NumberFormatException
+			}
+			return new MemberCursor(sortKey, "asc".equals(parts[1]), value, Long.parseLong(parts[2]));
+		} catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+			throw new InvalidCursorException("잘못된 커서입니다: " + cursor, e);
+		}
+	}
+
+	public String encode() {
+		String raw = sortKey.name() + ":" + (ascending ? "asc" : "desc") + ":" + id + (value != null ? ":" + value : "");
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public boolean matches(Sort.Order order) {
+		return sortKey == SortKey.of(order.getProperty()) && ascending == order.isAscending();
+	}
+}
@@ -3,16 +3,28 @@ package study.querydsl.repository;
 import static org.springframework.util.StringUtils.hasText;
 import static querydsl.study.querydsl.entity.QMember.member;
 import static querydsl.study.querydsl.entity.QTeam.team;
+import static study.querydsl.repository.MemberSearchQueryCache.AGE_GOE;
+import static study.querydsl.repository.MemberSearchQueryCache.AGE_LOE;
+import static study.querydsl.repository.MemberSearchQueryCache.TEAM_NAME;
+import static study.querydsl.repository.MemberSearchQueryCache.USERNAME;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import javax.persistence.EntityManager;
 
+import org.hibernate.annotations.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 
+import com.mysema.commons.lang.CloseableIterator;
 import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 
 import lombok.RequiredArgsConstructor;
@@ -20,6 +32,10 @@ import querydsl.study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberSearchQueryCache.Shape;
+import study.querydsl.repository.support.ColumnarQuery;
+import study.querydsl.repository.support.ColumnarResult;
+import study.querydsl.repository.support.IdBatchLoader;
 
 @Repository
 @RequiredArgsConstructor
@@ -27,6 +43,9 @@ public class MemberJpaRepository {
 
 	private final EntityManager em;
 	private final JPAQueryFactory queryFactory;
+	private final MemberSearchQueryCache searchQueryCache;
+	private final IdBatchLoader idBatchLoader;
+	private final UsernameFilter usernameFilter;
 	
 	/* JPAQueryFactory를 spring bean으로 등록하여 사용해도 됨 
 	public MemberJpaRepository(EntityManager em) {
@@ -44,6 +63,12 @@ public class MemberJpaRepository {
 		return Optional.ofNullable(findMember);
 	}
 	
+	// findById를 반복하는 대신 IN 쿼리로 묶어서 조회한다. 결과는 ids 순서대로
+	@Transactional(readOnly = true)
+	public List<Member> findAllByIds(Collection<Long> ids) {
+		return idBatchLoader.findAllByIds(member, member.id, ids);
+	}
+	
 	public List<Member> findAll() {
 		return em.createQuery("select m from Member m", Member.class)
 					.getResultList();
@@ -55,35 +80,70 @@ public class MemberJpaRepository {
 				.fetch();
 	}
 	
+	/*
+	 * 조회한 엔티티를 read-only로 영속성 컨텍스트에 올린다.
+	 * 스냅샷을 만들지 않고 flush 때 변경 감지 대상에서 빠진다. (수정해도 반영되지 않음)
+	 */
+	@Transactional(readOnly = true)
+	public List<Member> findAllQuerydslReadOnly() {
+		return queryFactory
+				.selectFrom(member)
+				.setHint(QueryHints.READ_ONLY, true)
+				.fetch();
+	}
+	
 	public List<Member> findByUsername(String username) {
 		return em.createQuery("select m from Member m where m.username = :username", Member.class)
 			.setParameter("username", username)
 			.getResultList();
 	}
 	
+	// 없는 username이면 UsernameFilter에서 걸러서 쿼리 없이 빈 결과를 돌려준다.
+	@Transactional(readOnly = true)
 	public List<Member> findByUsernameQuerydsl(String username) {
+		if (usernameFilter.definitelyAbsent(username)) {
+			return Collections.emptyList();
+		}
 		return queryFactory
 				.selectFrom(member)
 				.where(member.username.eq(username))
 				.fetch();
 	}
 	
+	@Transactional(readOnly = true)
 	public List<MemberTeamDto> searchByBuilder(MemberSearchCondition condition) {
-		
-		BooleanBuilder builder = new BooleanBuilder();
-		if (hasText(condition.getUsername())) {
-			builder.and(member.username.eq(condition.getUsername()));
-		}
-		if (hasText(condition.getTeamName())) {
-			builder.and(team.name.eq(condition.getTeamName()));
-		}
-		if (condition.getAgeGoe() != null) {
-			builder.and(member.age.goe(condition.getAgeGoe()));
-		}
-		if (condition.getAgeLoe() != null) {
-			builder.and(member.age.loe(condition.getAgeLoe()));
-		}
-		return queryFactory
+		return searchQueryCache.fetch("MemberJpaRepository.searchByBuilder", condition, shape -> {
+			BooleanBuilder builder = new BooleanBuilder();
+			if (shape.isUsername()) {
+				builder.and(member.username.eq(USERNAME));
+			}
+			if (shape.isTeamName()) {
+				builder.and(team.name.eq(TEAM_NAME));
+			}
+			if (shape.isAgeGoe()) {
+				builder.and(member.age.goe(AGE_GOE));
+			}
+			if (shape.isAgeLoe()) {
+				builder.and(member.age.loe(AGE_LOE));
+			}
+			return queryFactory
+					.select(new QMemberTeamDto(
+							member.id.as("memberId"),
+							member.username,
+							member.age,
+							team.id.as("teamId"),
+							team.name.as("teamName")
+					))
+					.from(member)
+					.leftJoin(member.team, team)
+					.where(builder);
+		});
+	}
+	
+	// 조건의 shape별로 JPQL을 한 번만 만들고, 값은 실행 시점에 바인딩한다.
+	@Transactional(readOnly = true)
+	public List<MemberTeamDto> search(MemberSearchCondition condition) {
+		return searchQueryCache.fetch("MemberJpaRepository.search", condition, shape -> queryFactory
 				.select(new QMemberTeamDto(
 						member.id.as("memberId"),
 						member.username,
@@ -93,12 +153,23 @@ public class MemberJpaRepository {
 				))
 				.from(member)
 				.leftJoin(member.team, team)
-				.where(builder)
-				.fetch();
+				.where(
+						usernameEq(shape),
+						teamNameEq(shape),
+						ageGoe(shape),
+						ageLoe(shape)
+				));
 	}
-	
-	public List<MemberTeamDto> search(MemberSearchCondition condition) {
-		return queryFactory
+
+	/*
+	 * 결과를 List로 모으지 않고 scroll 커서로 한 건씩 action에 넘긴다.
+	 * fetchSize 단위로 JDBC에서 가져오고, 같은 주기로 영속성 컨텍스트를 비워서
+	 * 조회 건수와 상관없이 메모리 사용량이 일정하다.
+	 * 호출한 쪽의 트랜잭션에 참여한 경우엔 그쪽 영속성 컨텍스트이므로 비우지 않는다.
+	 */
+	@Transactional(readOnly = true)
+	public void searchStream(MemberSearchCondition condition, int fetchSize, Consumer<MemberTeamDto> action) {
+		JPAQuery<MemberTeamDto> query = queryFactory
 				.select(new QMemberTeamDto(
 						member.id.as("memberId"),
 						member.username,
@@ -114,6 +185,39 @@ public class MemberJpaRepository {
 						ageGoe(condition.getAgeGoe()),
 						ageLoe(condition.getAgeLoe())
 				)
+				.setHint(QueryHints.FETCH_SIZE, fetchSize)
+				.setHint(QueryHints.READ_ONLY, true);
+		
+		boolean ownContext = TransactionAspectSupport.currentTransactionStatus().isNewTransaction();
+		try (CloseableIterator<MemberTeamDto> iterator = query.iterate()) {
+			long count = 0;
+			while (iterator.hasNext()) {
+				action.accept(iterator.next());
+				if (++count % fetchSize == 0 && ownContext) {
+					em.clear();
+				}
+			}
+		}
+	}
+
+	/*
+	 * 집계/분석용: 조건에 맞는 회원의 id, 나이, 팀 이름을 컬럼별 배열로 조회한다. (ColumnarQuery)
+	 * row마다 Tuple이나 DTO를 만들지 않는다.
+	 */
+	@Transactional(readOnly = true)
+	public ColumnarResult searchColumns(MemberSearchCondition condition) {
+		return ColumnarQuery.from(queryFactory
+						.from(member)
+						.leftJoin(member.team, team)
+						.where(
+								usernameEq(condition.getUsername()),
+								teamNameEq(condition.getTeamName()),
+								ageGoe(condition.getAgeGoe()),
+								ageLoe(condition.getAgeLoe())
+						))
+				.longs(member.id)
+				.ints(member.age)
+				.dictionary(team.name)
 				.fetch();
 	}
 
@@ -129,4 +233,17 @@ public class MemberJpaRepository {
 	private BooleanExpression ageLoe(Integer ageLoe) {
 		return ageLoe != null ? member.age.loe(ageLoe) : null;
 	}
+	
+	private BooleanExpression usernameEq(Shape shape) {
+		return shape.isUsername() ? member.username.eq(USERNAME) : null;
+	}
+	private BooleanExpression teamNameEq(Shape shape) {
+		return shape.isTeamName() ? team.name.eq(TEAM_NAME) : null;
+	}
+	private BooleanExpression ageGoe(Shape shape) {
+		return shape.isAgeGoe() ? member.age.goe(AGE_GOE) : null;
+	}
+	private BooleanExpression ageLoe(Shape shape) {
+		return shape.isAgeLoe() ? member.age.loe(AGE_LOE) : null;
+	}
 }
@@ -2,69 +2,101 @@ package study.querydsl.repository;
 
 import static org.springframework.util.StringUtils.hasText;
 import static querydsl.study.querydsl.entity.QMember.member;
-import static querydsl.study.querydsl.entity.QTeam.team;
+import static study.querydsl.repository.MemberSearchQueryCache.AGE_GOE;
+import static study.querydsl.repository.MemberSearchQueryCache.AGE_LOE;
+import static study.querydsl.repository.MemberSearchQueryCache.TEAM_IDS;
+import static study.querydsl.repository.MemberSearchQueryCache.USERNAME;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.repository.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.querydsl.core.QueryResults;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Order;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.ParamExpression;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 
 import lombok.RequiredArgsConstructor;
-import querydsl.study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.dto.MemberCursorPage;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberSearchQueryCache.Shape;
+import study.querydsl.repository.support.CountQueryExecutor;
+import study.querydsl.repository.support.FastProjections;
+import study.querydsl.repository.support.IdBatchLoader;
+import study.querydsl.repository.support.PendingCount;
 
 @Repository
 @RequiredArgsConstructor
 public class MemberRepositoryImpl implements MemberRepositoryQuerydsl {
 
 	private final JPAQueryFactory queryFactory;
+	private final MemberSearchQueryCache searchQueryCache;
+	private final CountQueryExecutor countQueryExecutor;
+	private final TeamReferenceCache teamReferenceCache;
+	private final IdBatchLoader idBatchLoader;
+	private final UsernameIndex usernameIndex;
+	private final UsernameFilter usernameFilter;
 	
+	/*
+	 * 조회 메서드는 읽기 전용 트랜잭션이므로 replica 라우팅이 켜져 있으면 replica에서 실행된다. (ReplicaRoutingDataSource)
+	 *
+	 * 팀 이름 조건과 teamName은 TeamReferenceCache로 처리하므로 Team을 join하지 않는다.
+	 * team.name = ? 대신 FK인 member.team.id in (?)로 조회하고, 없는 팀 이름이면 쿼리 없이 빈 결과를 돌려준다.
+	 */
 	@Override
+	@Transactional(readOnly = true)
 	public List<MemberTeamDto> search(MemberSearchCondition condition) {
-		return queryFactory
-				.select(new QMemberTeamDto(
-						member.id.as("memberId"),
-						member.username,
-						member.age,
-						team.id.as("teamId"),
-						team.name.as("teamName")
-				))
+		List<Long> teamIds = teamIds(condition.getTeamName());
+		if (teamIds != null && teamIds.isEmpty()) {
+			return Collections.emptyList();
+		}
+		Map<ParamExpression<?>, Object> params = teamIds != null
+				? Collections.singletonMap(TEAM_IDS, teamIds) : Collections.emptyMap();
+		List<MemberTeamDto> content = searchQueryCache.fetch("MemberRepositoryImpl.search", condition, params, shape -> queryFactory
+				.select(memberTeamDto())
 				.from(member)
-				.leftJoin(member.team, team)
 				.where(
-						usernameEq(condition.getUsername()),
-						teamNameEq(condition.getTeamName()),
-						ageGoe(condition.getAgeGoe()),
-						ageLoe(condition.getAgeLoe())
-				)
-				.fetch();
+						usernameEq(shape),
+						teamIdIn(shape),
+						ageGoe(shape),
+						ageLoe(shape)
+				));
+		return teamReferenceCache.fillTeamNames(content);
 	}
 
 	@Override
+	@Transactional(readOnly = true)
 	public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
+		List<Long> teamIds = teamIds(condition.getTeamName());
+		if (teamIds != null && teamIds.isEmpty()) {
+			return new PageImpl<>(Collections.emptyList(), pageable, 0);
+		}
 		QueryResults<MemberTeamDto> results = queryFactory
-				.select(new QMemberTeamDto(
-						member.id.as("memberId"),
-						member.username,
-						member.age,
-						team.id.as("teamId"),
-						team.name.as("teamName")
-				))
+				.select(memberTeamDto())
 				.from(member)
-				.leftJoin(member.team, team)
 				.where(
 						usernameEq(condition.getUsername()),
-						teamNameEq(condition.getTeamName()),
+						teamIdIn(teamIds),
 						ageGoe(condition.getAgeGoe()),
 						ageLoe(condition.getAgeLoe())
 				)
@@ -72,60 +104,211 @@ public class MemberRepositoryImpl implements MemberRepositoryQuerydsl {
 				.limit(pageable.getPageSize())
 				.fetchResults();
 		
-		List<MemberTeamDto> content = results.getResults();
+		List<MemberTeamDto> content = teamReferenceCache.fillTeamNames(results.getResults());
 		long total = results.getTotal();
 		
 		return new PageImpl<>(content, pageable, total);
 	}
 	
 	@Override
+	@Transactional(readOnly = true)
 	public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
-		List<MemberTeamDto> content = queryFactory
-				.select(new QMemberTeamDto(
-						member.id.as("memberId"),
-						member.username,
-						member.age,
-						team.id.as("teamId"),
-						team.name.as("teamName")
-				))
-				.from(member)
-				.leftJoin(member.team, team)
-				.where(
-						usernameEq(condition.getUsername()),
-						teamNameEq(condition.getTeamName()),
-						ageGoe(condition.getAgeGoe()),
-						ageLoe(condition.getAgeLoe())
-				)
-				.offset(pageable.getOffset())
-				.limit(pageable.getPageSize())
-				.fetch();
-		
+		List<Long> teamIds = teamIds(condition.getTeamName());
+		if (teamIds != null && teamIds.isEmpty()) {
+			return new PageImpl<>(Collections.emptyList(), pageable, 0);
+		}
 		JPAQuery<Member> countQuery = queryFactory
 				.select(member)
 				.from(member)
-				.leftJoin(member.team, team)
 				.where(
 						usernameEq(condition.getUsername()),
-						teamNameEq(condition.getTeamName()),
+						teamIdIn(teamIds),
 						ageGoe(condition.getAgeGoe()),
 						ageLoe(condition.getAgeLoe())
 				);
 				// .fetchCount();
 		
-		/*
-		 * count 쿼리를 실행할 필요가 없을 경우엔 실행하지 않는다. 다음과 같이 최적화한다.
-		 * 첫 페이지 일 때, pageSize > contentSize 이면 count 쿼리 실행 없이 contentSize를 리턴하면 된다.
-		 * 마지막 페이지 일 때, pageSize * 마지막 전 페이지 + 마지막 페이지 contentSize를 리턴하면 된다.
-		 */
-		return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchCount);
-		// return new PageImpl<>(content, pageable, total);
+		// 같은 조건으로 페이지를 넘기는 동안엔 count 결과를 캐시에서 재사용한다.
+		// 동시 실행 모드면 content 조회 전에 count 쿼리를 다른 커넥션에서 먼저 시작한다.
+		List<Object> countKey = Arrays.asList("MemberRepositoryImpl.searchPageComplex", condition.normalized());
+		try (PendingCount total = countQueryExecutor.prepare(countKey, countQuery)) {
+			List<MemberTeamDto> content = teamReferenceCache.fillTeamNames(queryFactory
+					.select(memberTeamDto())
+					.from(member)
+					.where(
+							usernameEq(condition.getUsername()),
+							teamIdIn(teamIds),
+							ageGoe(condition.getAgeGoe()),
+							ageLoe(condition.getAgeLoe())
+					)
+					.offset(pageable.getOffset())
+					.limit(pageable.getPageSize())
+					.fetch());
+			
+			/*
+			 * count 쿼리를 실행할 필요가 없을 경우엔 실행하지 않는다. 다음과 같이 최적화한다.
+			 * 첫 페이지 일 때, pageSize > contentSize 이면 count 쿼리 실행 없이 contentSize를 리턴하면 된다.
+			 * 마지막 페이지 일 때, pageSize * 마지막 전 페이지 + 마지막 페이지 contentSize를 리턴하면 된다.
+			 */
+			return PageableExecutionUtils.getPage(content, pageable, total);
+			// return new PageImpl<>(content, pageable, total);
+		}
 	}
-	
+
+	/*
+	 * offset 페이징은 앞 페이지의 row를 모두 읽고 버리므로 뒤 페이지로 갈수록 느려진다.
+	 * keyset 페이징은 마지막 row의 (정렬 키, member.id) 다음부터 읽으므로 몇 번째 페이지든 비용이 같다.
+	 * where (sortKey, id) > (?, ?) 를 sortKey > ? or (sortKey = ? and id > ?) 로 풀어서 사용한다.
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public MemberCursorPage searchByCursor(MemberSearchCondition condition, String cursor, Pageable pageable) {
+		Sort.Order order = MemberCursor.orderOf(pageable.getSort());
+		MemberCursor after = cursor != null ? MemberCursor.decode(cursor) : null;
+		if (after != null && !after.matches(order)) {
+			throw new InvalidCursorException("커서의 정렬 조건과 요청의 정렬 조건이 다릅니다.");
+		}
+		List<Long> teamIds = teamIds(condition.getTeamName());
+		if (teamIds != null && teamIds.isEmpty()) {
+			return new MemberCursorPage(Collections.emptyList(), null, false);
+		}
+
+		List<MemberTeamDto> content = queryFactory
+				.select(memberTeamDto())
+				.from(member)
+				.where(
+						usernameEq(condition.getUsername()),
+						teamIdIn(teamIds),
+						ageGoe(condition.getAgeGoe()),
+						ageLoe(condition.getAgeLoe()),
+						seekAfter(after)
+				)
+				.orderBy(keysetOrder(order))
+				.limit(pageable.getPageSize() + 1) // 다음 페이지 존재 여부 확인용으로 한 건 더 조회
+				.fetch();
+
+		boolean hasNext = content.size() > pageable.getPageSize();
+		if (hasNext) {
+			content = content.subList(0, pageable.getPageSize());
+		}
+		String nextCursor = hasNext ? MemberCursor.after(content.get(content.size() - 1), order).encode() : null;
+		return new MemberCursorPage(teamReferenceCache.fillTeamNames(content), nextCursor, hasNext);
+	}
+
+	// findById를 반복하는 대신 IN 쿼리로 묶어서 조회한다. 결과는 ids 순서대로 (IdBatchLoader)
+	@Override
+	@Transactional(readOnly = true)
+	public List<Member> findAllByIds(Collection<Long> ids) {
+		return idBatchLoader.findAllByIds(member, member.id, ids);
+	}
+
+	// 없는 username이면 UsernameFilter에서 걸러서 쿼리 없이 빈 결과를 돌려준다.
+	@Override
+	@Transactional(readOnly = true)
+	public List<Member> findByUsername(String username) {
+		if (usernameFilter.definitelyAbsent(username)) {
+			return Collections.emptyList();
+		}
+		return queryFactory
+				.selectFrom(member)
+				.where(member.username.eq(username))
+				.fetch();
+	}
+
+	/*
+	 * username 앞부분/부분 일치 검색. like 'x%', like '%x%' 대신 UsernameIndex에서 id를 찾고 id in (...)으로 조회한다.
+	 * 결과는 username, id 순서다.
+	 * UsernameIndex는 커밋된 변경만 반영하므로 아직 커밋되지 않은 변경(같은 트랜잭션 포함)은 보이지 않는다.
+	 * 인덱스를 읽은 뒤 커밋된 변경으로 더 이상 맞지 않게 된 row는 뺀다.
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public List<MemberTeamDto> searchByUsername(UsernameMatch match, String keyword, int limit) {
+		List<Long> ids = usernameIndex.search(match, keyword, limit);
+		if (ids.isEmpty()) {
+			return Collections.emptyList();
+		}
+		Map<Long, MemberTeamDto> rows = new HashMap<>();
+		for (MemberTeamDto dto : queryFactory
+				.select(memberTeamDto())
+				.from(member)
+				.where(member.id.in(ids))
+				.fetch()) {
+			rows.put(dto.getMemberId(), dto);
+		}
+		List<MemberTeamDto> content = new ArrayList<>(rows.size());
+		for (Long id : ids) {
+			MemberTeamDto dto = rows.get(id);
+			if (dto != null && match.matches(dto.getUsername(), keyword)) {
+				content.add(dto);
+			}
+		}
+		return teamReferenceCache.fillTeamNames(content);
+	}
+
+	private OrderSpecifier<?>[] keysetOrder(Sort.Order order) {
+		Order direction = order.isAscending() ? Order.ASC : Order.DESC;
+		switch (MemberCursor.SortKey.of(order.getProperty())) {
+		case USERNAME:
+			// null username의 위치를 DB 기본값에 맡기지 않는다. (seekAfter)
+			return new OrderSpecifier<?>[] {
+					new OrderSpecifier<>(direction, member.username, OrderSpecifier.NullHandling.NullsLast),
+					new OrderSpecifier<>(direction, member.id) };
+		case AGE:
+			return new OrderSpecifier<?>[] { new OrderSpecifier<>(direction, member.age), new OrderSpecifier<>(direction, member.id) };
+		default:
+			return new OrderSpecifier<?>[] { new OrderSpecifier<>(direction, member.id) };
+		}
+	}
+
+	/*
+	 * (a, id) > (x, y)를 a >= x and (a > x or id > y)로 쓴다.
+	 * 앞의 a >= x가 있어야 (team_id, age, username) 같은 인덱스의 범위 조건으로 쓰인다. (or만 있으면 인덱스를 타지 못한다)
+	 * username은 null이 마지막에 오므로 null 뒤는 null 중에서 id로 잇고, 값 뒤에는 null도 포함한다.
+	 */
+	private BooleanExpression seekAfter(MemberCursor cursor) {
+		if (cursor == null) {
+			return null;
+		}
+		boolean asc = cursor.isAscending();
+		BooleanExpression idAfter = asc ? member.id.gt(cursor.getId()) : member.id.lt(cursor.getId());
+		switch (cursor.getSortKey()) {
+		case USERNAME:
+			String username = cursor.getValue();
+			if (username == null) {
+				return member.username.isNull().and(idAfter);
+			}
+			return (asc ? member.username.goe(username) : member.username.loe(username))
+					.and((asc ? member.username.gt(username) : member.username.lt(username)).or(idAfter))
+					.or(member.username.isNull());
+		case AGE:
+			int age = Integer.parseInt(cursor.getValue());
+			return (asc ? member.age.goe(age) : member.age.loe(age))
+					.and((asc ? member.age.gt(age) : member.age.lt(age)).or(idAfter));
+		default:
+			return idAfter;
+		}
+	}
+
+	// teamName은 조회 후 TeamReferenceCache에서 채운다.
+	private FactoryExpression<MemberTeamDto> memberTeamDto() {
+		return FastProjections.bean(MemberTeamDto.class,
+				member.id.as("memberId"),
+				member.username,
+				member.age,
+				member.team.id.as("teamId"));
+	}
+
+	// 팀 이름 조건이 없으면 null, 없는 팀 이름이면 빈 리스트
+	private List<Long> teamIds(String teamName) {
+		return hasText(teamName) ? teamReferenceCache.idsOf(teamName) : null;
+	}
+
 	private BooleanExpression usernameEq(String username) {
 		return hasText(username) ? member.username.eq(username) : null;
 	}
-	private BooleanExpression teamNameEq(String teamName) {
-		return hasText(teamName) ? team.name.eq(teamName) : null;
+	private BooleanExpression teamIdIn(List<Long> teamIds) {
+		return teamIds != null ? member.team.id.in(teamIds) : null;
 	}
 	private BooleanExpression ageGoe(Integer ageGoe) {
 		return ageGoe != null ? member.age.goe(ageGoe) : null;
@@ -133,4 +316,17 @@ public class MemberRepositoryImpl implements MemberRepositoryQuerydsl {
 	private BooleanExpression ageLoe(Integer ageLoe) {
 		return ageLoe != null ? member.age.loe(ageLoe) : null;
 	}
+	
+	private BooleanExpression usernameEq(Shape shape) {
+		return shape.isUsername() ? member.username.eq(USERNAME) : null;
+	}
+	private BooleanExpression teamIdIn(Shape shape) {
+		return shape.isTeamName() ? Expressions.booleanOperation(Ops.IN, member.team.id, TEAM_IDS) : null;
+	}
+	private BooleanExpression ageGoe(Shape shape) {
+		return shape.isAgeGoe() ? member.age.goe(AGE_GOE) : null;
+	}
+	private BooleanExpression ageLoe(Shape shape) {
+		return shape.isAgeLoe() ? member.age.loe(AGE_LOE) : null;
+	}
 }
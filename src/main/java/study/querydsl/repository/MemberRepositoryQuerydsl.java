@@ -1,15 +1,22 @@
 package study.querydsl.repository;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import study.querydsl.dto.MemberCursorPage;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
 
 public interface MemberRepositoryQuerydsl {
 	List<MemberTeamDto> search(MemberSearchCondition condition);
 	Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable);
 	Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable);
+	MemberCursorPage searchByCursor(MemberSearchCondition condition, String cursor, Pageable pageable);
+	List<Member> findAllByIds(Collection<Long> ids);
+	List<Member> findByUsername(String username);
+	List<MemberTeamDto> searchByUsername(UsernameMatch match, String keyword, int limit);
 }
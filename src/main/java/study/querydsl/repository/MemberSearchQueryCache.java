@@ -0,0 +1,169 @@
+package study.querydsl.repository;
+
+import static org.springframework.util.StringUtils.hasText;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.dsl.Param;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAProvider;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAUtil;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.metrics.QueryMetricsRegistry;
+import study.querydsl.metrics.QuerySample;
+
+/**
+ * MemberSearchCondition의 null/non-null 조합(shape)별로 직렬화된 JPQL 캐시
+ *
+ * 조건 값은 Param으로 만들어 두고 실행 시점에 바인딩한다.
+ * 요청마다 Querydsl 표현식 트리를 만들고 JPQL로 직렬화하는 비용이 사라지고,
+ * 같은 shape은 항상 같은 JPQL 문자열이므로 Hibernate query plan cache도 그대로 재사용된다.
+ * member.search-query-cache.enabled=false 이면 캐시하지 않고 요청마다 직렬화한다. (벤치마크에서 비교용)
+ */
+@Component
+public class MemberSearchQueryCache {
+
+	public static final Param<String> USERNAME = new Param<>(String.class, "username");
+	public static final Param<String> TEAM_NAME = new Param<>(String.class, "teamName");
+	public static final Param<Integer> AGE_GOE = new Param<>(Integer.class, "ageGoe");
+	public static final Param<Integer> AGE_LOE = new Param<>(Integer.class, "ageLoe");
+	// 팀 이름 대신 TeamReferenceCache로 찾은 team id 목록을 바인딩할 때 사용
+	@SuppressWarnings("rawtypes")
+	public static final Param<Collection> TEAM_IDS = new Param<>(Collection.class, "teamIds");
+
+	private final EntityManager em;
+	private final boolean enabled;
+	private final ConcurrentMap<String, CompiledQuery> cache = new ConcurrentHashMap<>();
+	private QueryMetricsRegistry metricsRegistry;
+
+	public MemberSearchQueryCache(EntityManager em, @Value("${member.search-query-cache.enabled:true}") boolean enabled) {
+		this.em = em;
+		this.enabled = enabled;
+	}
+
+	// JPAQuery를 거치지 않고 실행하므로 지표는 여기서 기록한다.
+	@Autowired(required = false)
+	public void setMetricsRegistry(QueryMetricsRegistry metricsRegistry) {
+		this.metricsRegistry = metricsRegistry;
+	}
+
+	/**
+	 * @param queryName 같은 shape이라도 쿼리 모양이 다르면 이름으로 구분한다.
+	 * @param compiler shape에 맞는 쿼리를 Param으로 만든다. shape별로 한 번만 호출된다.
+	 */
+	public List<MemberTeamDto> fetch(String queryName, MemberSearchCondition condition,
+			Function<Shape, JPAQuery<MemberTeamDto>> compiler) {
+		return fetch(queryName, condition, Collections.emptyMap(), compiler);
+	}
+
+	/**
+	 * @param extraParams 조건 값 외에 쿼리가 사용하는 Param 값 (예: TEAM_IDS)
+	 */
+	public List<MemberTeamDto> fetch(String queryName, MemberSearchCondition condition,
+			Map<ParamExpression<?>, Object> extraParams, Function<Shape, JPAQuery<MemberTeamDto>> compiler) {
+		Shape shape = Shape.of(condition);
+		CompiledQuery compiled = enabled
+				? cache.computeIfAbsent(queryName + "#" + shape.bits(), key -> compile(compiler.apply(shape)))
+				: compile(compiler.apply(shape));
+
+		Map<ParamExpression<?>, Object> params = shape.bind(condition);
+		params.putAll(extraParams);
+		QuerySample sample = QuerySample.start(null);
+		Query query = em.createQuery(compiled.getJpql());
+		JPAUtil.setConstants(query, compiled.getConstantToLabel(), params);
+
+		List<?> rows = query.getResultList();
+		List<MemberTeamDto> result = new ArrayList<>(rows.size());
+		for (Object row : rows) {
+			result.add(compiled.getProjection().newInstance((Object[]) row));
+		}
+		if (metricsRegistry != null) {
+			sample.stop(metricsRegistry, "fetch", compiled.getJpql(), result.size());
+		}
+		return result;
+	}
+
+	public int size() {
+		return cache.size();
+	}
+
+	@SuppressWarnings("unchecked")
+	private CompiledQuery compile(JPAQuery<MemberTeamDto> query) {
+		QueryMetadata metadata = query.getMetadata();
+		JPQLSerializer serializer = new JPQLSerializer(JPAProvider.getTemplates(em), em);
+		serializer.serialize(metadata, false, null);
+		return new CompiledQuery(serializer.toString(), new HashMap<>(serializer.getConstantToAllLabels()),
+				(FactoryExpression<MemberTeamDto>) metadata.getProjection());
+	}
+
+	@Getter
+	@RequiredArgsConstructor
+	private static class CompiledQuery {
+		private final String jpql;
+		private final Map<Object, String> constantToLabel;
+		private final FactoryExpression<MemberTeamDto> projection;
+	}
+
+	@Getter
+	public static class Shape {
+		private final boolean username;
+		private final boolean teamName;
+		private final boolean ageGoe;
+		private final boolean ageLoe;
+
+		private Shape(MemberSearchCondition condition) {
+			this.username = hasText(condition.getUsername());
+			this.teamName = hasText(condition.getTeamName());
+			this.ageGoe = condition.getAgeGoe() != null;
+			this.ageLoe = condition.getAgeLoe() != null;
+		}
+
+		static Shape of(MemberSearchCondition condition) {
+			return new Shape(condition);
+		}
+
+		int bits() {
+			return (username ? 1 : 0) | (teamName ? 2 : 0) | (ageGoe ? 4 : 0) | (ageLoe ? 8 : 0);
+		}
+
+		Map<ParamExpression<?>, Object> bind(MemberSearchCondition condition) {
+			Map<ParamExpression<?>, Object> params = new HashMap<>();
+			if (username) {
+				params.put(USERNAME, condition.getUsername());
+			}
+			if (teamName) {
+				params.put(TEAM_NAME, condition.getTeamName());
+			}
+			if (ageGoe) {
+				params.put(AGE_GOE, condition.getAgeGoe());
+			}
+			if (ageLoe) {
+				params.put(AGE_LOE, condition.getAgeLoe());
+			}
+			return params;
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package study.querydsl.repository;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.EntityChangeEvent;
+import study.querydsl.repository.support.CacheStats;
+import study.querydsl.repository.support.ChangedInTransaction;
+import study.querydsl.repository.support.TtlCache;
+
+/**
+ * 검색 결과(List, Page) 캐시
+ *
+ * 키는 endpoint + 정규화한 검색 조건 + pageable이고, 크기는 캐시된 결과 row 수의 합(max-rows)으로 제한한다.
+ * TTL은 endpoint별로 member.search-cache.ttl.{endpoint}, 없으면 member.search-cache.ttl.default를 사용한다.
+ * Member/Team이 변경되면(flush, 벌크 연산) 바로 비우고, 트랜잭션이 끝난 뒤 한 번 더 비운다. (ChangedInTransaction)
+ */
+@Component
+public class MemberSearchResultCache {
+
+	private final TtlCache<List<Object>, Object> cache;
+	private final ChangedInTransaction changes;
+	private final Environment environment;
+	private final boolean enabled;
+	private final Duration defaultTtl;
+
+	public MemberSearchResultCache(Environment environment,
+			@Value("${member.search-cache.enabled:true}") boolean enabled,
+			@Value("${member.search-cache.ttl.default:10s}") Duration defaultTtl,
+			@Value("${member.search-cache.max-rows:100000}") long maxRows) {
+		this.environment = environment;
+		this.enabled = enabled;
+		this.defaultTtl = defaultTtl;
+		this.cache = new TtlCache<>(defaultTtl, maxRows, MemberSearchResultCache::rowsOf);
+		this.changes = new ChangedInTransaction(cache::invalidateAll);
+	}
+
+	@SuppressWarnings("unchecked")
+	public List<MemberTeamDto> list(String endpoint, MemberSearchCondition condition, Supplier<List<MemberTeamDto>> loader) {
+		if (!enabled) {
+			return loader.get();
+		}
+		return (List<MemberTeamDto>) cache.get(Arrays.asList(endpoint, condition.normalized()), ttlOf(endpoint), loader::get);
+	}
+
+	@SuppressWarnings("unchecked")
+	public Page<MemberTeamDto> page(String endpoint, MemberSearchCondition condition, Pageable pageable,
+			Supplier<Page<MemberTeamDto>> loader) {
+		if (!enabled) {
+			return loader.get();
+		}
+		return (Page<MemberTeamDto>) cache.get(Arrays.asList(endpoint, condition.normalized(), pageable), ttlOf(endpoint), loader::get);
+	}
+
+	@EventListener
+	public void onChange(EntityChangeEvent event) {
+		changes.changed();
+	}
+
+	public CacheStats stats() {
+		return cache.stats();
+	}
+
+	private Duration ttlOf(String endpoint) {
+		return environment.getProperty("member.search-cache.ttl." + endpoint, Duration.class, defaultTtl);
+	}
+
+	// 빈 결과도 1로 센다.
+	private static long rowsOf(Object result) {
+		int rows = result instanceof Page ? ((Page<?>) result).getNumberOfElements() : ((List<?>) result).size();
+		return Math.max(rows, 1);
+	}
+}
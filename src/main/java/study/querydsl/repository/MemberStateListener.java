@@ -0,0 +1,130 @@
+package study.querydsl.repository;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+
+import lombok.RequiredArgsConstructor;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+/**
+ * Member의 insert/update/delete를 알린다.
+ * - TeamStatisticsStore: (팀, 나이) 변경
+ * - UsernameIndex, UsernameFilter: username 변경
+ *
+ * JPA 콜백(EntityChangeListener)과 달리 Hibernate 이벤트는 id와 변경 전 상태(oldState, deletedState)를 준다.
+ * flush 시점에 호출되고, 반영은 각 store가 커밋 후에 한다.
+ * EntityManagerFactory를 만들 때 Integrator로 등록되므로 store는 처음 사용할 때 꺼낸다. (MemberStateListenerConfig)
+ */
+@SuppressWarnings("serial")
+@RequiredArgsConstructor
+class MemberStateListener implements Integrator, PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+	private final ObjectProvider<TeamStatisticsStore> statisticsStore;
+	private final ObjectProvider<UsernameIndex> usernameIndex;
+	private final ObjectProvider<UsernameFilter> usernameFilter;
+
+	@Override
+	public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+			SessionFactoryServiceRegistry serviceRegistry) {
+		EventListenerRegistry registry = serviceRegistry.getService(EventListenerRegistry.class);
+		registry.appendListeners(EventType.POST_INSERT, this);
+		registry.appendListeners(EventType.POST_UPDATE, this);
+		registry.appendListeners(EventType.POST_DELETE, this);
+	}
+
+	@Override
+	public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+	}
+
+	@Override
+	public void onPostInsert(PostInsertEvent event) {
+		if (event.getEntity() instanceof Member) {
+			EntityPersister persister = event.getPersister();
+			Object[] state = event.getState();
+			statisticsStore.getObject().memberChanged((Long) event.getId(),
+					teamId(persister, state, event.getSession()), age(persister, state));
+			usernameIndex.getObject().memberChanged((Long) event.getId(), username(persister, state));
+			usernameFilter.getObject().memberChanged(null, username(persister, state));
+		}
+	}
+
+	@Override
+	public void onPostUpdate(PostUpdateEvent event) {
+		if (!(event.getEntity() instanceof Member)) {
+			return;
+		}
+		EntityPersister persister = event.getPersister();
+		Object[] state = event.getState();
+		Object[] oldState = event.getOldState();
+		statisticsStore.getObject().memberChanged((Long) event.getId(),
+				teamId(persister, state, event.getSession()), age(persister, state));
+		// 스냅샷 없이 update된 경우(detached 엔티티 update 등)는 이전 값을 모른다.
+		if (oldState == null) {
+			usernameIndex.getObject().memberChanged((Long) event.getId(), username(persister, state));
+			usernameFilter.getObject().memberChanged(null, username(persister, state));
+			return;
+		}
+		if (!Objects.equals(username(persister, oldState), username(persister, state))) {
+			usernameIndex.getObject().memberChanged((Long) event.getId(), username(persister, state));
+			usernameFilter.getObject().memberChanged(username(persister, oldState), username(persister, state));
+		}
+	}
+
+	@Override
+	public void onPostDelete(PostDeleteEvent event) {
+		if (event.getEntity() instanceof Member) {
+			EntityPersister persister = event.getPersister();
+			Object[] state = event.getDeletedState();
+			statisticsStore.getObject().memberChanged((Long) event.getId(), null, null);
+			usernameIndex.getObject().memberChanged((Long) event.getId(), null);
+			usernameFilter.getObject().memberChanged(username(persister, state), null);
+		}
+	}
+
+	@Override
+	public boolean requiresPostCommitHandling(EntityPersister persister) {
+		return false;
+	}
+
+	// Hibernate 5.4에서는 아직 abstract라서 구현해야 한다.
+	@Override
+	@Deprecated
+	public boolean requiresPostCommitHanding(EntityPersister persister) {
+		return requiresPostCommitHandling(persister);
+	}
+
+	private static Long teamId(EntityPersister persister, Object[] state, SharedSessionContractImplementor session) {
+		Object team = state[persister.getEntityMetamodel().getPropertyIndex("team")];
+		if (team == null) {
+			return null;
+		}
+		// 프록시도 초기화하지 않고 id를 얻는다.
+		Serializable id = session.getContextEntityIdentifier(team);
+		return id != null ? (Long) id : ((Team) team).getId();
+	}
+
+	private static Integer age(EntityPersister persister, Object[] state) {
+		return (Integer) state[persister.getEntityMetamodel().getPropertyIndex("age")];
+	}
+
+	private static String username(EntityPersister persister, Object[] state) {
+		return (String) state[persister.getEntityMetamodel().getPropertyIndex("username")];
+	}
+}
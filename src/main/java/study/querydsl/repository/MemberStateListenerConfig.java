@@ -0,0 +1,25 @@
+package study.querydsl.repository;
+
+import java.util.Collections;
+
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * MemberStateListener를 Hibernate 이벤트 리스너로 등록한다.
+ */
+@Configuration
+public class MemberStateListenerConfig {
+
+	@Bean
+	public HibernatePropertiesCustomizer memberStateListener(ObjectProvider<TeamStatisticsStore> statisticsStore,
+			ObjectProvider<UsernameIndex> usernameIndex, ObjectProvider<UsernameFilter> usernameFilter) {
+		MemberStateListener listener = new MemberStateListener(statisticsStore, usernameIndex, usernameFilter);
+		return properties -> properties.put(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER,
+				(IntegratorProvider) () -> Collections.singletonList(listener));
+	}
+}
@@ -9,18 +9,27 @@ import java.util.List;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.repository.support.PageableExecutionUtils;
+import org.springframework.stereotype.Repository;
 
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQuery;
 
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.entity.Member;
+import study.querydsl.repository.support.FetchPlan;
 import study.querydsl.repository.support.Querydsl4RepositorySupport;
 
+@Repository
 public class MemberTestRepository extends Querydsl4RepositorySupport{
 
 	public MemberTestRepository() {
 		super(Member.class);
+		registerFetchPlan(FetchPlan.named("team").fetchJoin(member.team));
+		registerFetchPlan(FetchPlan.named("teamGraph").entityGraph("Member.team"));
+		registerFetchPlan(FetchPlan.named("teamBatch").batch(member.team, 100));
+		registerFetchPlan(FetchPlan.named("full").fetchJoin(member.team).batch(member.team.members, 100));
+		registerFetchPlan(FetchPlan.named("teamMembersBatch").batch(member.team.members, 100));
+		registerFetchPlan(FetchPlan.named("teamMembers").fetchJoin(member.team, team).fetchJoin(team.members));
 	}
 
 	public List<Member> basicSelect() {
@@ -34,6 +43,32 @@ public class MemberTestRepository extends Querydsl4RepositorySupport{
 				.fetch();
 	}
 	
+	/**
+	 * @param fetchPlan lean, team, teamGraph, teamBatch, full
+	 */
+	public List<Member> basicSelectFrom(String fetchPlan) {
+		return fetch(selectFrom(member), fetchPlan);
+	}
+	
+	// 조회한 엔티티를 수정해도 반영되지 않는다. (Querydsl4RepositorySupport.fetchReadOnly)
+	public List<Member> basicSelectFromReadOnly() {
+		return fetchReadOnly(selectFrom(member));
+	}
+	
+	public List<Member> basicSelectFromReadOnly(String fetchPlan) {
+		return fetchReadOnly(selectFrom(member), fetchPlan);
+	}
+	
+	public Page<Member> applyPagination(MemberSearchCondition condition, Pageable pageable, String fetchPlan) {
+		return applyPagination(pageable, fetchPlan, query -> query
+						.selectFrom(member)
+						.where(usernameEq(condition.getUsername()),
+								ageGoe(condition.getAgeGoe()),
+								ageLoe(condition.getAgeLoe())
+						)
+		);
+	}
+	
 	public Page<Member> searchPageByApplyPage(MemberSearchCondition condition, Pageable pageable) {
 		JPAQuery<Member> query = selectFrom(member)
 			.leftJoin(member.team, team)
@@ -60,6 +95,31 @@ public class MemberTestRepository extends Querydsl4RepositorySupport{
 		);
 	}
 	
+	// count 쿼리는 fetch join과 팀 조건이 없을 때의 team join을 뺀 select count(member.id)로 자동 생성된다.
+	public Page<Member> applyPaginationFetchJoin(MemberSearchCondition condition, Pageable pageable) {
+		return applyPagination(pageable, query -> query
+						.selectFrom(member)
+						.leftJoin(member.team, team).fetchJoin()
+						.where(usernameEq(condition.getUsername()),
+								teamNameEq(condition.getTeamName()),
+								ageGoe(condition.getAgeGoe()),
+								ageLoe(condition.getAgeLoe())
+						)
+		);
+	}
+	
+	// 별칭 없는 fetch join도 count 쿼리에서는 빠진다.
+	public Page<Member> applyPaginationTeamFetchJoin(MemberSearchCondition condition, Pageable pageable) {
+		return applyPagination(pageable, query -> query
+						.selectFrom(member)
+						.leftJoin(member.team).fetchJoin()
+						.where(usernameEq(condition.getUsername()),
+								ageGoe(condition.getAgeGoe()),
+								ageLoe(condition.getAgeLoe())
+						)
+		);
+	}
+	
 	public Page<Member> applyPagination2(MemberSearchCondition condition, Pageable pageable) {
 		return applyPagination(pageable, contentQuery -> contentQuery
 						.selectFrom(member)
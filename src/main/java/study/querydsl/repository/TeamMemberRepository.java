@@ -0,0 +1,55 @@
+package study.querydsl.repository;
+
+import static querydsl.study.querydsl.entity.QMember.member;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Repository;
+
+import study.querydsl.entity.Member;
+import study.querydsl.repository.support.Querydsl4RepositorySupport;
+
+/**
+ * 팀 소속 회원 조회 (Team.members 컬렉션을 읽지 않는다)
+ *
+ * 회원이 많은 팀의 members를 읽으면 전부 메모리에 올라오므로 개수, 포함 여부, 페이지를 SQL로 처리한다.
+ * 모두 member.team_id 조건이라 idx_member_team_age_username을 사용한다.
+ * 같은 트랜잭션에서 아직 flush하지 않은 변경(changeTeam 등)은 쿼리 전에 auto flush된다.
+ */
+@Repository
+public class TeamMemberRepository extends Querydsl4RepositorySupport {
+
+	public TeamMemberRepository() {
+		super(Member.class);
+	}
+
+	// team.getMembers().size()
+	public long countMembers(Long teamId) {
+		return select(member.count())
+				.from(member)
+				.where(member.team.id.eq(teamId))
+				.fetchOne();
+	}
+
+	// team.getMembers().contains(member)
+	public boolean containsMember(Long teamId, Long memberId) {
+		return select(member.id)
+				.from(member)
+				.where(member.id.eq(memberId),
+						member.team.id.eq(teamId))
+				.fetchFirst() != null;
+	}
+
+	/**
+	 * 정렬 조건이 없으면 member.id 순서
+	 */
+	public Page<Member> findMembers(Long teamId, Pageable pageable) {
+		Pageable sorted = pageable.getSort().isSorted() ? pageable
+				: PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by("id"));
+		return applyPagination(sorted, query -> query
+				.selectFrom(member)
+				.where(member.team.id.eq(teamId)));
+	}
+}
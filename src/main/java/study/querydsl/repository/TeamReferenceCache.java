@@ -0,0 +1,120 @@
+package study.querydsl.repository;
+
+import static querydsl.study.querydsl.entity.QTeam.team;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import lombok.RequiredArgsConstructor;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.EntityChangeEvent;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.ChangedInTransaction;
+
+/**
+ * Team 이름 <-> id 참조 캐시
+ *
+ * Team은 작고 거의 바뀌지 않는 테이블이라 전체를 메모리에 올려두고,
+ * 팀 이름 조건을 member.team.id(FK) 조건으로 바꾸고 조회 결과의 teamName을 채우는 데 사용한다.
+ * Team이 변경되면(flush, 벌크 연산) 바로 비우고, 트랜잭션이 끝난 뒤 한 번 더 비운다.
+ * (커밋 전에 다른 트랜잭션이 다시 읽어간 스냅샷을 버리기 위해, ChangedInTransaction)
+ */
+@Component
+@RequiredArgsConstructor
+public class TeamReferenceCache {
+
+	private final JPAQueryFactory queryFactory;
+
+	private final ChangedInTransaction changes = new ChangedInTransaction(this::invalidate);
+
+	private volatile Snapshot snapshot;
+	private long generation;
+
+	/**
+	 * @return 이름이 같은 팀들의 id. 없는 팀이면 빈 리스트
+	 */
+	public List<Long> idsOf(String name) {
+		return snapshot().idsByName.getOrDefault(name, Collections.emptyList());
+	}
+
+	public String nameOf(Long id) {
+		return id != null ? snapshot().namesById.get(id) : null;
+	}
+
+	/**
+	 * team join 없이 조회한 결과에 teamName을 채운다.
+	 */
+	public List<MemberTeamDto> fillTeamNames(List<MemberTeamDto> content) {
+		Snapshot current = snapshot();
+		for (MemberTeamDto dto : content) {
+			if (dto.getTeamId() != null) {
+				dto.setTeamName(current.namesById.get(dto.getTeamId()));
+			}
+		}
+		return content;
+	}
+
+	@EventListener
+	public void onChange(EntityChangeEvent event) {
+		if (event.getEntityType() == Team.class) {
+			changes.changed();
+		}
+	}
+
+	public synchronized void invalidate() {
+		generation++;
+		snapshot = null;
+	}
+
+	private Snapshot snapshot() {
+		Snapshot current = snapshot;
+		if (current != null) {
+			return current;
+		}
+		long loadGeneration;
+		synchronized (this) {
+			loadGeneration = generation;
+		}
+		Snapshot loaded = load();
+		synchronized (this) {
+			// 읽는 동안 무효화됐으면 저장하지 않는다.
+			if (loadGeneration == generation) {
+				snapshot = loaded;
+			}
+		}
+		return loaded;
+	}
+
+	private Snapshot load() {
+		Map<String, List<Long>> idsByName = new HashMap<>();
+		Map<Long, String> namesById = new HashMap<>();
+		for (Tuple tuple : queryFactory.select(team.id, team.name).from(team).orderBy(team.id.asc()).fetch()) {
+			Long id = tuple.get(team.id);
+			String name = tuple.get(team.name);
+			namesById.put(id, name);
+			if (name != null) {
+				idsByName.computeIfAbsent(name, key -> new ArrayList<>()).add(id);
+			}
+		}
+		return new Snapshot(idsByName, namesById);
+	}
+
+	private static class Snapshot {
+		private final Map<String, List<Long>> idsByName;
+		private final Map<Long, String> namesById;
+
+		Snapshot(Map<String, List<Long>> idsByName, Map<Long, String> namesById) {
+			this.idsByName = idsByName;
+			this.namesById = namesById;
+		}
+	}
+}
@@ -0,0 +1,202 @@
+package study.querydsl.repository;
+
+import static querydsl.study.querydsl.entity.QMember.member;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import study.querydsl.dto.TeamStatistics;
+import study.querydsl.entity.EntityChangeEvent;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.CommittedSnapshot;
+
+/**
+ * 팀별 회원 수, 나이 합계/최소/최대
+ *
+ * 처음 조회할 때 회원의 (팀, 나이)를 한 번 읽어서 집계하고, 이후에는 Member의 insert/update/delete를
+ * MemberStateListener(Hibernate 이벤트)로 받아서 커밋된 뒤에 증분으로 반영한다. (CommittedSnapshot)
+ * 변경은 회원의 마지막 (팀, 나이)로 기록하고 회원별 이전 값과 비교해서 반영하므로 같은 변경을 두 번 적용해도 결과가 같다.
+ * 팀마다 나이별 인원(histogram)을 들고 있으므로 최소/최대 나이인 회원이 빠져도 다시 집계하지 않는다.
+ *
+ * 벌크 연산(execute)은 어떤 row가 바뀌었는지 알 수 없으므로 커밋된 뒤 전체를 다시 집계한다. (다음 조회 시)
+ */
+@Component
+@RequiredArgsConstructor
+public class TeamStatisticsStore extends CommittedSnapshot<TeamStatisticsStore.Statistics, TeamStatisticsStore.TransactionDelta> {
+
+	private final JPAQueryFactory queryFactory;
+	private final TeamReferenceCache teamReferenceCache;
+
+	public TeamStatistics get(Long teamId) {
+		Histogram histogram = get().histograms.get(teamId);
+		return histogram != null ? withTeamName(histogram.toStatistics(teamId)) : null;
+	}
+
+	public List<TeamStatistics> getAll() {
+		Map<Long, Histogram> histograms = get().histograms;
+		List<TeamStatistics> result = new ArrayList<>(histograms.size());
+		histograms.forEach((teamId, histogram) -> result.add(withTeamName(histogram.toStatistics(teamId))));
+		return result;
+	}
+
+	private TeamStatistics withTeamName(TeamStatistics statistics) {
+		return new TeamStatistics(statistics.getTeamId(), teamReferenceCache.nameOf(statistics.getTeamId()),
+				statistics.getCount(), statistics.getAgeSum(), statistics.getMinAge(), statistics.getMaxAge());
+	}
+
+	/**
+	 * 회원의 (팀, 나이)가 바뀌었다. 팀이 없거나 삭제되었으면 teamId가 null
+	 */
+	void memberChanged(Long memberId, Long teamId, Integer age) {
+		TeamAge teamAge = teamId != null && age != null ? new TeamAge(teamId, age) : null;
+		record(delta -> delta.changes.put(memberId, teamAge));
+	}
+
+	@EventListener
+	public void onChange(EntityChangeEvent event) {
+		if (event.getType() == EntityChangeEvent.Type.BULK
+				&& (event.getEntityType() == Member.class || event.getEntityType() == Team.class)) {
+			record(TransactionDelta::reload);
+		}
+	}
+
+	@Override
+	protected Statistics load() {
+		Statistics loaded = new Statistics();
+		for (Tuple tuple : queryFactory
+				.select(member.id, member.team.id, member.age)
+				.from(member)
+				.where(member.team.isNotNull())
+				.fetch()) {
+			loaded.put(tuple.get(member.id), new TeamAge(tuple.get(member.team.id), tuple.get(member.age)));
+		}
+		return loaded;
+	}
+
+	@Override
+	protected TransactionDelta newDelta() {
+		return new TransactionDelta();
+	}
+
+	@Override
+	protected Statistics copy(Statistics statistics) {
+		return new Statistics(statistics);
+	}
+
+	@Override
+	protected void apply(Statistics statistics, TransactionDelta delta, boolean replay) {
+		delta.changes.forEach(statistics::put);
+	}
+
+	/*
+	 * 트랜잭션 하나의 변경: member id -> 마지막 (팀, 나이) (팀이 없거나 삭제되었으면 null)
+	 */
+	static class TransactionDelta extends CommittedSnapshot.Delta {
+
+		private final Map<Long, TeamAge> changes = new LinkedHashMap<>();
+	}
+
+	/*
+	 * 복사본은 맵만 복사하고 Histogram은 바꿀 때 복사한다.
+	 */
+	static class Statistics {
+
+		private final Map<Long, TeamAge> members;
+		private final Map<Long, Histogram> histograms;
+		// 이 복사본에서 만든 Histogram (다른 스냅샷과 공유하지 않으므로 바로 바꾼다)
+		private final Set<Histogram> owned = Collections.newSetFromMap(new IdentityHashMap<>());
+
+		Statistics() {
+			members = new HashMap<>();
+			histograms = new HashMap<>();
+		}
+
+		Statistics(Statistics source) {
+			members = new HashMap<>(source.members);
+			histograms = new HashMap<>(source.histograms);
+		}
+
+		void put(Long memberId, TeamAge teamAge) {
+			TeamAge old = teamAge != null ? members.put(memberId, teamAge) : members.remove(memberId);
+			if (Objects.equals(old, teamAge)) {
+				return;
+			}
+			if (old != null) {
+				Histogram histogram = histogram(old.teamId);
+				histogram.add(old.age, -1);
+				if (histogram.count == 0) {
+					histograms.remove(old.teamId);
+				}
+			}
+			if (teamAge != null) {
+				histogram(teamAge.teamId).add(teamAge.age, 1);
+			}
+		}
+
+		private Histogram histogram(Long teamId) {
+			Histogram histogram = histograms.get(teamId);
+			if (histogram == null || !owned.contains(histogram)) {
+				histogram = histogram != null ? new Histogram(histogram) : new Histogram();
+				owned.add(histogram);
+				histograms.put(teamId, histogram);
+			}
+			return histogram;
+		}
+	}
+
+	@Value
+	private static class TeamAge {
+		Long teamId;
+		int age;
+	}
+
+	private static class Histogram {
+
+		private final NavigableMap<Integer, Long> countsByAge;
+		private long count;
+		private long ageSum;
+
+		Histogram() {
+			countsByAge = new TreeMap<>();
+		}
+
+		Histogram(Histogram source) {
+			countsByAge = new TreeMap<>(source.countsByAge);
+			count = source.count;
+			ageSum = source.ageSum;
+		}
+
+		void add(int age, long delta) {
+			long updated = countsByAge.getOrDefault(age, 0L) + delta;
+			if (updated > 0) {
+				countsByAge.put(age, updated);
+			} else {
+				countsByAge.remove(age);
+			}
+			count += delta;
+			ageSum += (long) age * delta;
+		}
+
+		TeamStatistics toStatistics(Long teamId) {
+			return new TeamStatistics(teamId, null, count, ageSum, countsByAge.firstKey(), countsByAge.lastKey());
+		}
+	}
+}
@@ -0,0 +1,273 @@
+package study.querydsl.repository;
+
+import static querydsl.study.querydsl.entity.QMember.member;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+import org.springframework.util.unit.DataSize;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import lombok.extern.slf4j.Slf4j;
+import study.querydsl.entity.EntityChangeEvent;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.support.CommittedSnapshot;
+import study.querydsl.repository.support.CountingBloomFilter;
+
+/**
+ * 있는 username 집합의 Bloom filter (CountingBloomFilter)
+ *
+ * findByUsername은 대부분 없는 username으로 호출되므로 filter가 확실히 없다고 하면 DB를 조회하지 않는다.
+ * 틀리면 안 되는 쪽은 "없다"이므로 변경을 다음과 같이 반영한다. (CommittedSnapshot)
+ * - insert, 이름 변경, delete는 커밋된 뒤에 반영한다. 커밋 전의 새 username은 그 트랜잭션 안에서만 "있을 수 있다"로 본다.
+ * - 다시 만드는 동안 커밋된 변경은 추가만 다시 적용하고 삭제는 버린다. (삭제를 두 번 하면 다른 username이 없는 것으로 보일 수 있다)
+ * - 벌크 연산이 있었던 트랜잭션 안에서는 쓰지 않고, 커밋되면 버리고 다시 만든다.
+ * - 영속성 컨텍스트에 엔티티가 있으면 쓰지 않는다. (flush 안 된 persist/이름 변경은 조회 쿼리의 auto flush로만 보인다)
+ * - 대소문자나 끝 공백을 무시하는 collation에서도 틀리지 않도록 소문자로 바꾸고 끝 공백을 지운 값을 넣는다.
+ *
+ * 이 애플리케이션 인스턴스가 Hibernate(엔티티 변경, Querydsl 벌크 연산)로만 member를 바꾼다고 가정한다.
+ * 다른 인스턴스, JPQL/native 벌크 연산, 다른 애플리케이션이 바꾼 username은 알 수 없으므로
+ * - rebuild-interval마다 다시 만들고,
+ * - "없다"고 답한 username 중 verify-rate 비율을 별도 스레드에서 DB로 확인해서 있으면 버리고 다시 만든다. (확인 전의 답은 틀릴 수 있다)
+ * 여러 인스턴스가 member를 쓰면 enabled=false로 끈다. 직접 member 테이블을 바꿨으면 invalidate()를 호출한다.
+ *
+ * 시작할 때와 filter가 없을 때 별도 스레드의 새 트랜잭션(primary)에서 member 테이블을 읽어 만든다.
+ * 원소 수가 expected-insertions를 넘으면 두 배 크기로 다시 만든다.
+ */
+@Slf4j
+@Component
+public class UsernameFilter extends CommittedSnapshot<CountingBloomFilter, UsernameFilter.TransactionDelta> {
+
+	private final JPAQueryFactory queryFactory;
+	private final EntityManager em;
+	private final TransactionTemplate rebuildTransaction;
+	private final ThreadPoolExecutor executor;
+	private final boolean enabled;
+	private final long expectedInsertions;
+	private final double falsePositiveRate;
+	private final long maxBytes;
+	private final long rebuildIntervalNanos;
+	private final double verifyRate;
+
+	// 마지막으로 다시 만든 시각 (System.nanoTime)
+	private volatile long rebuiltAt;
+
+	public UsernameFilter(JPAQueryFactory queryFactory, EntityManager em, PlatformTransactionManager transactionManager,
+			@Value("${member.username-filter.enabled:true}") boolean enabled,
+			@Value("${member.username-filter.expected-insertions:100000}") long expectedInsertions,
+			@Value("${member.username-filter.false-positive-rate:0.01}") double falsePositiveRate,
+			@Value("${member.username-filter.max-memory:16MB}") DataSize maxMemory,
+			@Value("${member.username-filter.rebuild-interval:10m}") Duration rebuildInterval,
+			@Value("${member.username-filter.verify-rate:0.01}") double verifyRate) {
+		this.queryFactory = queryFactory;
+		this.em = em;
+		this.rebuildTransaction = new TransactionTemplate(transactionManager);
+		this.rebuildTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		// 다시 만들거나 확인하는 작업은 하나만 실행하고, 기다리는 작업도 하나만 둔다.
+		this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1),
+				new CustomizableThreadFactory("username-filter-"), new ThreadPoolExecutor.DiscardPolicy());
+		this.enabled = enabled;
+		this.expectedInsertions = expectedInsertions;
+		this.falsePositiveRate = falsePositiveRate;
+		this.maxBytes = maxMemory.toBytes();
+		this.rebuildIntervalNanos = rebuildInterval.toNanos();
+		this.verifyRate = verifyRate;
+		Assert.isTrue(expectedInsertions > 0, "expected-insertions는 1 이상이어야 합니다.");
+		Assert.isTrue(falsePositiveRate > 0 && falsePositiveRate < 1, "false-positive-rate는 0과 1 사이여야 합니다.");
+		Assert.isTrue(maxBytes > 0, "max-memory는 0보다 커야 합니다.");
+		Assert.isTrue(!rebuildInterval.isNegative() && !rebuildInterval.isZero(), "rebuild-interval은 0보다 커야 합니다.");
+		Assert.isTrue(verifyRate >= 0 && verifyRate <= 1, "verify-rate는 0과 1 사이여야 합니다.");
+	}
+
+	/**
+	 * @return true면 username인 회원이 확실히 없다. false면 DB를 조회해야 한다.
+	 */
+	public boolean definitelyAbsent(String username) {
+		if (!enabled || username == null || hasManagedEntities()) {
+			return false;
+		}
+		String key = key(username);
+		TransactionDelta delta = currentDelta();
+		if (delta != null && (delta.bulk || delta.added.containsKey(key))) {
+			return false;
+		}
+		CountingBloomFilter filter = getIfPresent();
+		if (filter == null) {
+			rebuildLater();
+			return false;
+		}
+		if (filter.getSize() > filter.getCapacity() || System.nanoTime() - rebuiltAt > rebuildIntervalNanos) {
+			rebuildLater();
+		}
+		if (filter.mightContain(key)) {
+			return false;
+		}
+		if (verifyRate > 0 && ThreadLocalRandom.current().nextDouble() < verifyRate) {
+			verifyLater(username);
+		}
+		return true;
+	}
+
+	/**
+	 * 회원의 username이 바뀌었다. insert면 oldUsername이, delete면 newUsername이 null
+	 * 이전 username을 모르면 oldUsername을 null로 넘긴다. (남아 있는 이전 username은 오탐일 뿐이다)
+	 */
+	void memberChanged(String oldUsername, String newUsername) {
+		if (!enabled) {
+			return;
+		}
+		record(delta -> {
+			if (newUsername != null) {
+				delta.added.merge(key(newUsername), 1, Integer::sum);
+			}
+			if (oldUsername != null) {
+				delta.removed.add(key(oldUsername));
+			}
+		});
+	}
+
+	@EventListener
+	public void onChange(EntityChangeEvent event) {
+		if (enabled && event.getType() == EntityChangeEvent.Type.BULK && event.getEntityType() == Member.class) {
+			record(delta -> {
+				delta.bulk = true;
+				delta.reload();
+			});
+		}
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void onReady() {
+		rebuildLater();
+	}
+
+	/**
+	 * member 테이블을 읽어 다시 만든다.
+	 * @return 저장했으면 true
+	 */
+	public boolean rebuild() {
+		if (!enabled || !reload()) {
+			return false;
+		}
+		rebuiltAt = System.nanoTime();
+		CountingBloomFilter filter = getIfPresent();
+		if (filter != null) {
+			log.debug("username filter rebuilt: size={}, capacity={}, bytes={}, hashes={}",
+					filter.getSize(), filter.getCapacity(), filter.getByteSize(), filter.getHashCount());
+		}
+		return true;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Override
+	protected CountingBloomFilter load() {
+		return rebuildTransaction.execute(status -> {
+			List<String> usernames = queryFactory.select(member.username).from(member).where(member.username.isNotNull()).fetch();
+			// 여유를 두고 현재 회원 수의 두 배로 만든다.
+			CountingBloomFilter loaded = new CountingBloomFilter(
+					Math.max(expectedInsertions, usernames.size() * 2L), falsePositiveRate, maxBytes);
+			usernames.forEach(username -> loaded.add(key(username)));
+			return loaded;
+		});
+	}
+
+	@Override
+	protected TransactionDelta newDelta() {
+		return new TransactionDelta();
+	}
+
+	@Override
+	protected CountingBloomFilter copy(CountingBloomFilter filter) {
+		return new CountingBloomFilter(filter);
+	}
+
+	/*
+	 * 추가를 먼저 해야 같은 트랜잭션에서 이름을 바꿨다 되돌린 경우에도 카운터가 0 아래로 내려가지 않는다.
+	 * replay면 load가 이미 삭제를 봤을 수 있으므로 삭제하지 않는다. (오탐으로 남는다)
+	 */
+	@Override
+	protected void apply(CountingBloomFilter filter, TransactionDelta delta, boolean replay) {
+		delta.added.forEach((key, count) -> {
+			for (int i = 0; i < count; i++) {
+				filter.add(key);
+			}
+		});
+		if (!replay) {
+			delta.removed.forEach(filter::remove);
+		}
+	}
+
+	private void rebuildLater() {
+		if (enabled && executor.getQueue().isEmpty()) {
+			executor.execute(() -> {
+				try {
+					rebuild();
+				} catch (RuntimeException e) {
+					log.warn("username filter rebuild failed", e);
+				}
+			});
+		}
+	}
+
+	// filter가 없다고 한 username을 DB로 확인한다. 있으면 모르는 변경이 있었으므로 버리고 다시 만든다.
+	private void verifyLater(String username) {
+		executor.execute(() -> {
+			try {
+				Integer found = rebuildTransaction.execute(status ->
+						queryFactory.selectOne().from(member).where(member.username.eq(username)).fetchFirst());
+				if (found != null) {
+					log.warn("username filter missed an existing username; member was changed outside this instance's Hibernate session");
+					invalidate();
+					rebuild();
+				}
+			} catch (RuntimeException e) {
+				log.warn("username filter verification failed", e);
+			}
+		});
+	}
+
+	private boolean hasManagedEntities() {
+		return em.unwrap(SessionImplementor.class).getPersistenceContext().getNumberOfManagedEntities() > 0;
+	}
+
+	private static String key(String username) {
+		return username.toLowerCase(Locale.ROOT).stripTrailing();
+	}
+
+	/*
+	 * 트랜잭션 하나의 변경
+	 */
+	static class TransactionDelta extends CommittedSnapshot.Delta {
+
+		// username -> 추가된 수 (같은 username인 회원이 여럿일 수 있다)
+		private final Map<String, Integer> added = new HashMap<>();
+		private final List<String> removed = new ArrayList<>();
+		private boolean bulk;
+	}
+}
@@ -0,0 +1,249 @@
+package study.querydsl.repository;
+
+import static querydsl.study.querydsl.entity.QMember.member;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import lombok.RequiredArgsConstructor;
+import study.querydsl.entity.EntityChangeEvent;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.support.CommittedSnapshot;
+
+/**
+ * Member.username 앞부분/부분 일치 검색용 메모리 인덱스
+ *
+ * username like '%x%'는 DB 인덱스를 탈 수 없어서 전체 테이블을 읽는다. 대신 메모리에 두 가지 인덱스를 둔다.
+ * - 앞부분 일치: username 정렬 맵(TreeMap)에서 keyword 이후를 keyword로 시작하는 동안만 읽는다.
+ * - 부분 일치: username의 글자 1개, 2개짜리 조각(n-gram) -> member id 목록.
+ *   keyword의 조각 중 회원이 가장 적은 조각의 후보만 실제 username과 비교한다.
+ * 결과는 (username, id) 순서의 member id다. 내용은 DB에서 조회한다. (MemberRepositoryImpl.searchByUsername)
+ *
+ * 처음 검색할 때 (id, username)을 한 번 읽어서 만들고, 이후에는 MemberStateListener(Hibernate 이벤트)로 받은
+ * 변경을 커밋된 뒤에만 반영한다. (CommittedSnapshot) 벌크 연산은 커밋된 뒤 다시 만든다. (다음 검색 시)
+ * 검색은 lock 없이 공개된 인덱스를 읽는다.
+ */
+@Component
+@RequiredArgsConstructor
+public class UsernameIndex extends CommittedSnapshot<UsernameIndex.Index, UsernameIndex.TransactionDelta> {
+
+	// 검색 한 번에 돌려주는 id 수 제한
+	public static final int MAX_LIMIT = 1000;
+
+	private static final int GRAM_SIZE = 2;
+
+	private final JPAQueryFactory queryFactory;
+
+	/**
+	 * @return keyword와 일치하는 member id. username, id 순서로 최대 limit개
+	 */
+	public List<Long> search(UsernameMatch match, String keyword, int limit) {
+		if (keyword == null || keyword.isEmpty()) {
+			throw new IllegalArgumentException("검색어가 없습니다.");
+		}
+		if (limit < 1 || limit > MAX_LIMIT) {
+			throw new IllegalArgumentException("limit은 1 이상 " + MAX_LIMIT + " 이하여야 합니다: " + limit);
+		}
+		Index index = get();
+		return match == UsernameMatch.PREFIX ? index.prefix(keyword, limit) : index.contains(keyword, limit);
+	}
+
+	/**
+	 * 회원의 username이 바뀌었다. insert도 같고, delete면 username이 null
+	 */
+	void memberChanged(Long id, String username) {
+		record(delta -> delta.changes.put(id, username));
+	}
+
+	@EventListener
+	public void onChange(EntityChangeEvent event) {
+		if (event.getType() == EntityChangeEvent.Type.BULK && event.getEntityType() == Member.class) {
+			record(TransactionDelta::reload);
+		}
+	}
+
+	@Override
+	protected Index load() {
+		Index loaded = new Index();
+		for (Tuple tuple : queryFactory.select(member.id, member.username).from(member).fetch()) {
+			loaded.put(tuple.get(member.id), tuple.get(member.username));
+		}
+		return loaded;
+	}
+
+	@Override
+	protected TransactionDelta newDelta() {
+		return new TransactionDelta();
+	}
+
+	@Override
+	protected Index copy(Index index) {
+		return new Index(index);
+	}
+
+	// 마지막 username을 그대로 넣으므로 두 번 적용해도 같다.
+	@Override
+	protected void apply(Index index, TransactionDelta delta, boolean replay) {
+		delta.changes.forEach(index::put);
+	}
+
+	/*
+	 * 트랜잭션 하나의 변경: member id -> 마지막 username (삭제면 null)
+	 */
+	static class TransactionDelta extends CommittedSnapshot.Delta {
+
+		private final Map<Long, String> changes = new LinkedHashMap<>();
+	}
+
+	/*
+	 * 복사본은 맵만 복사하고 id 목록(Set)은 바꿀 때 복사한다.
+	 */
+	static class Index {
+
+		private final Map<Long, String> usernames;
+		private final NavigableMap<String, Set<Long>> idsByUsername;
+		private final Map<String, Set<Long>> idsByGram;
+		// 이 복사본에서 만든 id 목록 (다른 스냅샷과 공유하지 않으므로 바로 바꾼다)
+		private final Set<Set<Long>> owned = Collections.newSetFromMap(new IdentityHashMap<>());
+
+		Index() {
+			usernames = new HashMap<>();
+			idsByUsername = new TreeMap<>();
+			idsByGram = new HashMap<>();
+		}
+
+		Index(Index source) {
+			usernames = new HashMap<>(source.usernames);
+			idsByUsername = new TreeMap<>(source.idsByUsername);
+			idsByGram = new HashMap<>(source.idsByGram);
+		}
+
+		void put(Long id, String username) {
+			String old = username != null ? usernames.put(id, username) : usernames.remove(id);
+			if (Objects.equals(old, username)) {
+				return;
+			}
+			if (old != null) {
+				remove(idsByUsername, old, id, TreeSet::new);
+				for (String gram : grams(old)) {
+					remove(idsByGram, gram, id, HashSet::new);
+				}
+			}
+			if (username != null) {
+				add(idsByUsername, username, id, TreeSet::new);
+				for (String gram : grams(username)) {
+					add(idsByGram, gram, id, HashSet::new);
+				}
+			}
+		}
+
+		List<Long> prefix(String keyword, int limit) {
+			List<Long> result = new ArrayList<>();
+			for (Map.Entry<String, Set<Long>> entry : idsByUsername.tailMap(keyword, true).entrySet()) {
+				if (!entry.getKey().startsWith(keyword)) {
+					break;
+				}
+				for (Long id : entry.getValue()) {
+					if (result.size() == limit) {
+						return result;
+					}
+					result.add(id);
+				}
+			}
+			return result;
+		}
+
+		List<Long> contains(String keyword, int limit) {
+			// keyword 조각을 모두 가진 회원만 후보가 되므로 가장 작은 목록만 확인하면 된다.
+			Set<Long> candidates = null;
+			for (String gram : queryGrams(keyword)) {
+				Set<Long> ids = idsByGram.get(gram);
+				if (ids == null) {
+					return Collections.emptyList();
+				}
+				if (candidates == null || ids.size() < candidates.size()) {
+					candidates = ids;
+				}
+			}
+			List<Long> result = new ArrayList<>();
+			for (Long id : candidates) {
+				if (usernames.get(id).contains(keyword)) {
+					result.add(id);
+				}
+			}
+			result.sort(Comparator.comparing((Long id) -> usernames.get(id)).thenComparing(Comparator.naturalOrder()));
+			return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+		}
+
+		// username의 1글자, GRAM_SIZE글자 조각
+		private static Set<String> grams(String username) {
+			Set<String> grams = new HashSet<>();
+			for (int i = 0; i < username.length(); i++) {
+				grams.add(username.substring(i, i + 1));
+				if (i + GRAM_SIZE <= username.length()) {
+					grams.add(username.substring(i, i + GRAM_SIZE));
+				}
+			}
+			return grams;
+		}
+
+		// 검색어는 GRAM_SIZE보다 짧으면 그대로, 아니면 GRAM_SIZE글자 조각으로 찾는다.
+		private static Set<String> queryGrams(String keyword) {
+			if (keyword.length() < GRAM_SIZE) {
+				return Collections.singleton(keyword);
+			}
+			Set<String> grams = new HashSet<>();
+			for (int i = 0; i + GRAM_SIZE <= keyword.length(); i++) {
+				grams.add(keyword.substring(i, i + GRAM_SIZE));
+			}
+			return grams;
+		}
+
+		private <K> void add(Map<K, Set<Long>> postings, K key, Long id, Function<Collection<Long>, Set<Long>> factory) {
+			writable(postings, key, factory).add(id);
+		}
+
+		private <K> void remove(Map<K, Set<Long>> postings, K key, Long id, Function<Collection<Long>, Set<Long>> factory) {
+			Set<Long> ids = postings.get(key);
+			if (ids == null || !ids.contains(id)) {
+				return;
+			}
+			if (ids.size() == 1) {
+				postings.remove(key);
+				return;
+			}
+			writable(postings, key, factory).remove(id);
+		}
+
+		// 다른 스냅샷과 공유하는 목록이면 복사해서 바꾼다.
+		private <K> Set<Long> writable(Map<K, Set<Long>> postings, K key, Function<Collection<Long>, Set<Long>> factory) {
+			Set<Long> ids = postings.get(key);
+			if (ids == null || !owned.contains(ids)) {
+				ids = factory.apply(ids != null ? ids : Collections.<Long>emptySet());
+				owned.add(ids);
+				postings.put(key, ids);
+			}
+			return ids;
+		}
+	}
+}
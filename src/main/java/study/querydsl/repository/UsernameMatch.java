@@ -0,0 +1,21 @@
+package study.querydsl.repository;
+
+/**
+ * username 검색 방식 (UsernameIndex)
+ */
+public enum UsernameMatch {
+	PREFIX, CONTAINS;
+
+	public boolean matches(String username, String keyword) {
+		return username != null && (this == PREFIX ? username.startsWith(keyword) : username.contains(keyword));
+	}
+
+	public static UsernameMatch of(String match) {
+		for (UsernameMatch value : values()) {
+			if (value.name().equalsIgnoreCase(match)) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("지원하지 않는 검색 방식입니다: " + match);
+	}
+}
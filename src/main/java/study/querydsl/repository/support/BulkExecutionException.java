@@ -0,0 +1,24 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+
+/**
+ * chunk 처리 중 실패
+ * 실패한 chunk는 롤백되고, 그 전 chunk들은 커밋된 상태다. BulkOptions.resumeAfter(getLastCommittedId())로 이어서 실행한다.
+ */
+@Getter
+public class BulkExecutionException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final BulkProgress progress;
+
+	public BulkExecutionException(BulkProgress progress, Throwable cause) {
+		super("bulk 연산 실패 (마지막 커밋 id: " + progress.getLastCommittedId() + ")", cause);
+		this.progress = progress;
+	}
+
+	public Long getLastCommittedId() {
+		return progress.getLastCommittedId();
+	}
+}
@@ -0,0 +1,61 @@
+package study.querydsl.repository.support;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+
+import org.springframework.util.Assert;
+
+import lombok.Getter;
+
+/**
+ * ChunkedBulkExecutor 실행 옵션
+ *
+ * <pre>
+ * BulkOptions.chunkSize(1000).throttle(Duration.ofMillis(50)).resumeAfter(lastCommittedId).onProgress(log::info)
+ * </pre>
+ */
+@Getter
+public class BulkOptions {
+
+	private final int chunkSize;
+	private Duration throttle = Duration.ZERO;
+	private Long resumeAfter;
+	private Consumer<BulkProgress> progressListener = progress -> {
+	};
+
+	private BulkOptions(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * @param chunkSize 한 트랜잭션에서 처리할 대상 row 수
+	 */
+	public static BulkOptions chunkSize(int chunkSize) {
+		Assert.isTrue(chunkSize > 0, "chunkSize must be positive!");
+		return new BulkOptions(chunkSize);
+	}
+
+	/**
+	 * chunk를 커밋한 뒤 다음 chunk를 시작하기 전에 쉬는 시간 (다른 트랜잭션과 복제에 여유를 준다)
+	 */
+	public BulkOptions throttle(Duration throttle) {
+		this.throttle = throttle;
+		return this;
+	}
+
+	/**
+	 * 실패한 작업을 이어서 실행할 때 마지막으로 커밋된 id (BulkExecutionException.getLastCommittedId)
+	 */
+	public BulkOptions resumeAfter(Long lastCommittedId) {
+		this.resumeAfter = lastCommittedId;
+		return this;
+	}
+
+	/**
+	 * chunk가 커밋될 때마다 호출된다.
+	 */
+	public BulkOptions onProgress(Consumer<BulkProgress> progressListener) {
+		this.progressListener = progressListener;
+		return this;
+	}
+}
@@ -0,0 +1,19 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * 커밋된 chunk까지의 진행 상황
+ * lastCommittedId 이하의 id 범위는 처리가 끝났다.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class BulkProgress {
+	private final int chunks;
+	private final long affectedRows;
+	private final Long lastCommittedId;
+	private final long elapsedMillis;
+}
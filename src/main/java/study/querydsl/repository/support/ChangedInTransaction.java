@@ -0,0 +1,37 @@
+package study.querydsl.repository.support;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 엔티티 변경으로 비우는 캐시의 트랜잭션별 변경 표시 (CountCache, MemberSearchResultCache, TeamReferenceCache)
+ *
+ * 변경이 있으면 바로 비워서 같은 트랜잭션이 이전 결과를 읽지 않게 하고, 트랜잭션이 끝난 뒤 한 번 더 비운다.
+ * (커밋 전에 다른 트랜잭션이 다시 채운 이전 결과를 버리기 위해)
+ * 트랜잭션이 끝날 때 비우는 일은 변경 수와 상관없이 한 번만 등록한다.
+ * 변경이 있었다는 표시는 CommittedSnapshot.record처럼 트랜잭션 리소스로 묶는다.
+ * 트랜잭션 밖의 변경은 바로 비우기만 한다.
+ */
+@RequiredArgsConstructor
+public class ChangedInTransaction {
+
+	private final Runnable invalidate;
+
+	public void changed() {
+		invalidate.run();
+		if (!TransactionSynchronizationManager.isSynchronizationActive()
+				|| TransactionSynchronizationManager.hasResource(this)) {
+			return;
+		}
+		TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCompletion(int status) {
+				TransactionSynchronizationManager.unbindResourceIfPossible(ChangedInTransaction.this);
+				invalidate.run();
+			}
+		});
+	}
+}
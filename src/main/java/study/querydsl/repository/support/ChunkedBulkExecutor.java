@@ -0,0 +1,163 @@
+package study.querydsl.repository.support;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+
+/**
+ * 대량 update/delete를 id 범위별 chunk로 나눠서 chunk마다 커밋한다.
+ *
+ * 테이블 전체를 한 번에 execute하면 락을 오래 잡고 undo 로그가 커지므로
+ * 조건에 맞는 row를 id 순으로 chunkSize개씩 끊어서 (lastId, upperId] 범위로 실행한다.
+ * 각 chunk는 새 트랜잭션(REQUIRES_NEW)이므로 호출한 쪽 트랜잭션에서 커밋하지 않은 변경은 보이지 않는다.
+ *
+ * chunk가 커밋될 때마다 호출한 쪽 영속성 컨텍스트에서 그 chunk가 처리한 id의 엔티티만 detach한다. (em.clear 대신)
+ * 처리한 id는 chunk 범위를 정할 때 조회한 id다.
+ */
+@Component
+public class ChunkedBulkExecutor {
+
+	private final EntityManager em;
+	private final JPAQueryFactory queryFactory;
+	private final TransactionTemplate chunkTransaction;
+
+	public ChunkedBulkExecutor(EntityManager em, JPAQueryFactory queryFactory, PlatformTransactionManager transactionManager) {
+		this.em = em;
+		this.queryFactory = queryFactory;
+		this.chunkTransaction = new TransactionTemplate(transactionManager);
+		this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+	}
+
+	/**
+	 * <pre>
+	 * update(member, member.id, member.age.lt(30), clause -> clause.set(member.username, "재야장수"), BulkOptions.chunkSize(1000))
+	 * </pre>
+	 *
+	 * @param where null이면 전체
+	 */
+	public BulkProgress update(EntityPath<?> entity, NumberPath<Long> id, Predicate where,
+			Consumer<JPAUpdateClause> assignments, BulkOptions options) {
+		return execute(entity, id, where, options, (from, to) -> {
+			JPAUpdateClause clause = queryFactory.update(entity);
+			assignments.accept(clause);
+			return clause.where(where, range(id, from, to)).execute();
+		});
+	}
+
+	public BulkProgress delete(EntityPath<?> entity, NumberPath<Long> id, Predicate where, BulkOptions options) {
+		return execute(entity, id, where, options,
+				(from, to) -> queryFactory.delete(entity).where(where, range(id, from, to)).execute());
+	}
+
+	private BulkProgress execute(EntityPath<?> entity, NumberPath<Long> id, Predicate where, BulkOptions options,
+			ChunkOperation operation) {
+		long start = System.currentTimeMillis();
+		BulkProgress progress = new BulkProgress(0, 0, options.getResumeAfter(), 0);
+		try {
+			while (true) {
+				Long from = progress.getLastCommittedId();
+				Chunk chunk = chunkTransaction.execute(status -> {
+					List<Long> ids = nextIds(entity, id, where, from, options.getChunkSize());
+					if (ids.isEmpty()) {
+						return null;
+					}
+					return new Chunk(ids, operation.execute(from, ids.get(ids.size() - 1)));
+				});
+				if (chunk == null) {
+					return progress;
+				}
+				detach(entity.getType(), chunk.ids);
+				progress = new BulkProgress(progress.getChunks() + 1, progress.getAffectedRows() + chunk.affectedRows,
+						chunk.ids.get(chunk.ids.size() - 1), System.currentTimeMillis() - start);
+				options.getProgressListener().accept(progress);
+				// chunkSize보다 적으면 남은 row가 없다.
+				if (chunk.ids.size() < options.getChunkSize()) {
+					return progress;
+				}
+				throttle(options.getThrottle());
+			}
+		} catch (RuntimeException e) {
+			throw new BulkExecutionException(progress, e);
+		}
+	}
+
+	// 조건에 맞는 row 중 from 다음부터 chunkSize개의 id
+	private List<Long> nextIds(EntityPath<?> entity, NumberPath<Long> id, Predicate where, Long from, int chunkSize) {
+		return queryFactory
+				.select(id)
+				.from(entity)
+				.where(where, from != null ? id.gt(from) : null)
+				.orderBy(id.asc())
+				.limit(chunkSize)
+				.fetch();
+	}
+
+	private static Predicate range(NumberPath<Long> id, Long from, Long to) {
+		return from != null ? id.gt(from).and(id.loe(to)) : id.loe(to);
+	}
+
+	private static void throttle(Duration throttle) {
+		if (throttle.isZero() || throttle.isNegative()) {
+			return;
+		}
+		try {
+			Thread.sleep(throttle.toMillis());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("bulk 연산 중단", e);
+		}
+	}
+
+	/*
+	 * 호출한 쪽 트랜잭션의 영속성 컨텍스트에 남아 있는 처리한 id의 엔티티는 DB와 달라졌으므로 detach한다.
+	 * 트랜잭션 밖이면 영속성 컨텍스트가 없다.
+	 */
+	private void detach(Class<?> entityType, List<Long> ids) {
+		if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+			return;
+		}
+		SessionImplementor session = em.unwrap(SessionImplementor.class);
+		PersistenceContext persistenceContext = session.getPersistenceContext();
+		if (persistenceContext.getNumberOfManagedEntities() == 0) {
+			return;
+		}
+		EntityPersister persister = session.getFactory().getMetamodel().entityPersister(entityType);
+		for (Long entityId : ids) {
+			Object managed = persistenceContext.getEntity(session.generateEntityKey(entityId, persister));
+			if (managed != null) {
+				em.detach(managed);
+			}
+		}
+	}
+
+	private static class Chunk {
+		private final List<Long> ids;
+		private final long affectedRows;
+
+		Chunk(List<Long> ids, long affectedRows) {
+			this.ids = ids;
+			this.affectedRows = affectedRows;
+		}
+	}
+
+	private interface ChunkOperation {
+		long execute(Long from, Long to);
+	}
+}
@@ -0,0 +1,214 @@
+package study.querydsl.repository.support;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.Query;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.annotations.QueryHints;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.jpa.impl.JPAQuery;
+
+/**
+ * 집계/분석용 조회. 결과를 row(Tuple)가 아니라 컬럼별 primitive 배열로 받는다.
+ *
+ * <pre>
+ * ColumnarResult result = ColumnarQuery.from(queryFactory.from(member).leftJoin(member.team, team))
+ *         .longs(member.id)
+ *         .ints(member.age)
+ *         .dictionary(team.name)
+ *         .fetch();
+ * </pre>
+ *
+ * select(...).fetch()는 전체 결과를 List로 만들고 row마다 Tuple을 만든다.
+ * 여기서는 scroll 커서로 한 row씩 읽으면서 값을 바로 컬럼 배열에 넣으므로 결과 List, Tuple, DTO가 생기지 않는다.
+ * (Hibernate가 JDBC 값을 읽으면서 만드는 row 배열과 boxing은 남는다)
+ * 집계는 결과 배열에 대한 단순 반복문이라 JIT가 벡터화하기 좋다.
+ */
+public class ColumnarQuery {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final JPAQuery<?> query;
+	private final Map<Expression<?>, Column> columns = new LinkedHashMap<>();
+	private int fetchSize = 1000;
+
+	private ColumnarQuery(JPAQuery<?> query) {
+		this.query = query;
+	}
+
+	/**
+	 * @param query from, join, where까지 지정한 쿼리 (select는 무시된다)
+	 */
+	public static ColumnarQuery from(JPAQuery<?> query) {
+		return new ColumnarQuery(query);
+	}
+
+	public ColumnarQuery longs(Expression<? extends Number> expr) {
+		return add(expr, new LongColumn());
+	}
+
+	public ColumnarQuery ints(Expression<? extends Number> expr) {
+		return add(expr, new IntColumn());
+	}
+
+	public ColumnarQuery doubles(Expression<? extends Number> expr) {
+		return add(expr, new DoubleColumn());
+	}
+
+	public ColumnarQuery dictionary(Expression<String> expr) {
+		return add(expr, new DictionaryColumn());
+	}
+
+	public ColumnarQuery fetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+		return this;
+	}
+
+	private ColumnarQuery add(Expression<?> expr, Column column) {
+		if (columns.putIfAbsent(expr, column) != null) {
+			throw new IllegalArgumentException("이미 추가한 컬럼: " + expr);
+		}
+		return this;
+	}
+
+	/**
+	 * 트랜잭션(커넥션) 안에서 호출해야 한다. 한 번만 실행할 수 있다.
+	 */
+	public ColumnarResult fetch() {
+		if (columns.isEmpty()) {
+			throw new IllegalStateException("컬럼을 하나 이상 지정해야 합니다.");
+		}
+		Column[] collectors = columns.values().toArray(new Column[0]);
+		int size = 0;
+
+		Query jpaQuery = query.select(columns.keySet().toArray(new Expression<?>[0])).createQuery();
+		jpaQuery.setHint(QueryHints.FETCH_SIZE, fetchSize);
+		jpaQuery.setHint(QueryHints.READ_ONLY, true);
+		try (ScrollableResults results = jpaQuery.unwrap(org.hibernate.query.Query.class).scroll(ScrollMode.FORWARD_ONLY)) {
+			while (results.next()) {
+				Object[] row = results.get();
+				for (int i = 0; i < collectors.length; i++) {
+					collectors[i].add(size, row[i]);
+				}
+				size++;
+			}
+		}
+
+		Map<Expression<?>, Object> arrays = new HashMap<>();
+		Map<Expression<?>, BitSet> nulls = new HashMap<>();
+		for (Map.Entry<Expression<?>, Column> entry : columns.entrySet()) {
+			arrays.put(entry.getKey(), entry.getValue().toArray(size));
+			nulls.put(entry.getKey(), entry.getValue().nulls);
+		}
+		return new ColumnarResult(size, arrays, nulls);
+	}
+
+	private abstract static class Column {
+
+		final BitSet nulls = new BitSet();
+
+		void add(int row, Object value) {
+			if (value == null) {
+				nulls.set(row);
+			}
+			append(row, value);
+		}
+
+		abstract void append(int row, Object value);
+
+		abstract Object toArray(int size);
+	}
+
+	private static class LongColumn extends Column {
+
+		private long[] values = new long[INITIAL_CAPACITY];
+
+		@Override
+		void append(int row, Object value) {
+			if (row == values.length) {
+				values = Arrays.copyOf(values, row * 2);
+			}
+			values[row] = value != null ? ((Number) value).longValue() : 0L;
+		}
+
+		@Override
+		Object toArray(int size) {
+			return Arrays.copyOf(values, size);
+		}
+	}
+
+	private static class IntColumn extends Column {
+
+		private int[] values = new int[INITIAL_CAPACITY];
+
+		@Override
+		void append(int row, Object value) {
+			if (row == values.length) {
+				values = Arrays.copyOf(values, row * 2);
+			}
+			values[row] = value != null ? ((Number) value).intValue() : 0;
+		}
+
+		@Override
+		Object toArray(int size) {
+			return Arrays.copyOf(values, size);
+		}
+	}
+
+	private static class DoubleColumn extends Column {
+
+		private double[] values = new double[INITIAL_CAPACITY];
+
+		@Override
+		void append(int row, Object value) {
+			if (row == values.length) {
+				values = Arrays.copyOf(values, row * 2);
+			}
+			values[row] = value != null ? ((Number) value).doubleValue() : 0d;
+		}
+
+		@Override
+		Object toArray(int size) {
+			return Arrays.copyOf(values, size);
+		}
+	}
+
+	private static class DictionaryColumn extends Column {
+
+		private int[] codes = new int[INITIAL_CAPACITY];
+		private final Map<String, Integer> index = new HashMap<>();
+		private final List<String> values = new ArrayList<>();
+
+		@Override
+		void append(int row, Object value) {
+			if (row == codes.length) {
+				codes = Arrays.copyOf(codes, row * 2);
+			}
+			if (value == null) {
+				codes[row] = -1;
+				return;
+			}
+			Integer code = index.get(value);
+			if (code == null) {
+				code = values.size();
+				index.put((String) value, code);
+				values.add((String) value);
+			}
+			codes[row] = code;
+		}
+
+		@Override
+		Object toArray(int size) {
+			return new ColumnarResult.Dictionary(Arrays.copyOf(codes, size), values);
+		}
+	}
+}
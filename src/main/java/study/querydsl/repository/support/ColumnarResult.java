@@ -0,0 +1,131 @@
+package study.querydsl.repository.support;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.querydsl.core.types.Expression;
+
+/**
+ * ColumnarQuery 결과. 컬럼마다 primitive 배열 하나 (row 순서는 모든 컬럼이 같다)
+ *
+ * <pre>
+ * long[] ids = result.getLongs(member.id);
+ * int[] ages = result.getInts(member.age);
+ * Dictionary teams = result.getDictionary(team.name);
+ * </pre>
+ *
+ * null 값은 숫자 컬럼에서는 0으로 들어가고 getNulls로 구분한다. Dictionary는 code가 -1이다.
+ */
+public class ColumnarResult {
+
+	private final int size;
+	private final Map<Expression<?>, Object> columns;
+	private final Map<Expression<?>, BitSet> nulls;
+
+	ColumnarResult(int size, Map<Expression<?>, Object> columns, Map<Expression<?>, BitSet> nulls) {
+		this.size = size;
+		this.columns = columns;
+		this.nulls = nulls;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public long[] getLongs(Expression<?> expr) {
+		return column(expr, long[].class);
+	}
+
+	public int[] getInts(Expression<?> expr) {
+		return column(expr, int[].class);
+	}
+
+	public double[] getDoubles(Expression<?> expr) {
+		return column(expr, double[].class);
+	}
+
+	public Dictionary getDictionary(Expression<String> expr) {
+		return column(expr, Dictionary.class);
+	}
+
+	// null인 row 번호
+	public BitSet getNulls(Expression<?> expr) {
+		column(expr, Object.class);
+		return nulls.get(expr);
+	}
+
+	private <T> T column(Expression<?> expr, Class<T> type) {
+		Object column = columns.get(expr);
+		if (column == null) {
+			throw new IllegalArgumentException("조회하지 않은 컬럼: " + expr);
+		}
+		if (!type.isInstance(column)) {
+			throw new IllegalArgumentException(expr + " 컬럼은 " + column.getClass().getSimpleName() + " 입니다.");
+		}
+		return type.cast(column);
+	}
+
+	/**
+	 * 사전 인코딩한 문자열 컬럼
+	 * 값마다 row 순서가 아니라 처음 나온 순서로 code(0, 1, 2, ...)를 붙이고 row에는 code만 둔다.
+	 * 팀 이름처럼 종류가 적은 값은 문자열 참조 대신 int 하나로 group by를 할 수 있다.
+	 */
+	public static class Dictionary {
+
+		private final int[] codes;
+		private final String[] values;
+		private final Map<String, Integer> index;
+
+		Dictionary(int[] codes, List<String> values) {
+			this.codes = codes;
+			this.values = values.toArray(new String[0]);
+			this.index = new HashMap<>(values.size() * 2);
+			for (int code = 0; code < this.values.length; code++) {
+				index.put(this.values[code], code);
+			}
+		}
+
+		// row별 code, null이면 -1
+		public int[] getCodes() {
+			return codes;
+		}
+
+		// code별 값
+		public String[] getValues() {
+			return values;
+		}
+
+		public String get(int row) {
+			return codes[row] < 0 ? null : values[codes[row]];
+		}
+
+		// 없는 값이면 -1
+		public int codeOf(String value) {
+			return index.getOrDefault(value, -1);
+		}
+
+		// code별 row 수 (null 제외)
+		public long[] counts() {
+			long[] counts = new long[values.length];
+			for (int code : codes) {
+				if (code >= 0) {
+					counts[code]++;
+				}
+			}
+			return counts;
+		}
+
+		// code별 합계 (null 제외)
+		public long[] sums(int[] column) {
+			long[] sums = new long[values.length];
+			for (int row = 0; row < codes.length; row++) {
+				if (codes[row] >= 0) {
+					sums[codes[row]] += column[row];
+				}
+			}
+			return sums;
+		}
+	}
+}
@@ -0,0 +1,222 @@
+package study.querydsl.repository.support;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 커밋된 변경만 반영하는 메모리 스냅샷 (TeamStatisticsStore, UsernameIndex, UsernameFilter)
+ *
+ * - 변경은 트랜잭션마다 delta에 모았다가 커밋된 뒤에 반영한다. 롤백되면 버린다.
+ * - 스냅샷이 없으면 load로 만든다. DB는 lock 없이 읽고, 읽는 동안 커밋된 delta는 만든 스냅샷에 다시 적용(replay)한 뒤 저장한다.
+ *   load가 그 변경을 이미 봤는지 알 수 없으므로 replay는 두 번 적용해도 안전해야 한다.
+ *   스냅샷을 저장하기 전에 시작된 트랜잭션의 delta도 같은 이유로 replay로 적용한다.
+ *   load한 트랜잭션에서 바꾼 내용(커밋 전)이 보였을 수 있으면 저장하지 않는다.
+ * - 공개된 스냅샷은 바꾸지 않으므로 lock 없이 읽는다. 커밋된 delta는 모아뒀다가 다음 읽기에서 복사본에 적용해서 바꿔 끼운다.
+ * - 벌크 연산처럼 무엇이 바뀌었는지 모르면 delta를 reload로 표시한다. 커밋되면 스냅샷을 버리고 다음 읽기에서 다시 만든다.
+ *   트랜잭션 밖의 변경은 커밋 여부를 알 수 없으므로 바로 버린다.
+ *
+ * @param <S> 스냅샷
+ * @param <D> 트랜잭션 하나의 변경
+ */
+public abstract class CommittedSnapshot<S, D extends CommittedSnapshot.Delta> {
+
+	private volatile S snapshot;
+	// 커밋됐지만 snapshot에 아직 적용하지 않은 delta
+	private final List<D> committed = new ArrayList<>();
+	private volatile boolean dirty;
+	// load하는 동안 커밋된 delta (load 중이 아니면 null)
+	private List<D> committedDuringLoad;
+	private int loading;
+	// invalidate 횟수. load하는 동안 바뀌면 저장하지 않는다.
+	private long generation;
+	// 저장한 스냅샷 수
+	private long epoch;
+
+	/**
+	 * DB에서 스냅샷을 만든다. lock 밖에서 호출된다.
+	 */
+	protected abstract S load();
+
+	protected abstract D newDelta();
+
+	/**
+	 * 공개된 스냅샷은 바꾸지 않으므로 delta를 적용할 복사본을 만든다.
+	 */
+	protected abstract S copy(S snapshot);
+
+	/**
+	 * @param replay true면 snapshot에 이미 반영된 delta일 수 있다.
+	 */
+	protected abstract void apply(S snapshot, D delta, boolean replay);
+
+	/**
+	 * 스냅샷이 없으면 만든다. 반환된 스냅샷은 바꾸면 안 된다.
+	 */
+	protected S get() {
+		S current = published();
+		if (current != null) {
+			return current;
+		}
+		long loadGeneration = startLoad();
+		S loaded = loadOrAbort();
+		finishLoad(loaded, loadGeneration, false);
+		return loaded;
+	}
+
+	/**
+	 * 스냅샷이 없으면 만들지 않고 null
+	 */
+	protected S getIfPresent() {
+		return published();
+	}
+
+	/**
+	 * 스냅샷이 있어도 다시 만든다.
+	 * @return 저장했으면 true. 만드는 동안 invalidate되었으면 저장하지 않는다.
+	 */
+	protected boolean reload() {
+		long loadGeneration = startLoad();
+		return finishLoad(loadOrAbort(), loadGeneration, true);
+	}
+
+	public synchronized void invalidate() {
+		generation++;
+		snapshot = null;
+		committed.clear();
+		dirty = false;
+	}
+
+	/**
+	 * 현재 트랜잭션의 delta에 변경을 기록한다.
+	 */
+	protected void record(Consumer<D> change) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			invalidate();
+			return;
+		}
+		D delta = currentDelta();
+		if (delta == null) {
+			D created = newDelta();
+			synchronized (this) {
+				created.epoch = epoch;
+			}
+			TransactionSynchronizationManager.bindResource(this, created);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int status) {
+					TransactionSynchronizationManager.unbindResourceIfPossible(CommittedSnapshot.this);
+					if (status == TransactionSynchronization.STATUS_COMMITTED) {
+						committed(created);
+					}
+				}
+			});
+			delta = created;
+		}
+		change.accept(delta);
+	}
+
+	/**
+	 * 현재 트랜잭션의 delta. 변경이 없었으면 null
+	 */
+	@SuppressWarnings("unchecked")
+	protected D currentDelta() {
+		return (D) TransactionSynchronizationManager.getResource(this);
+	}
+
+	private S published() {
+		S current = snapshot;
+		if (current == null || !dirty) {
+			return current;
+		}
+		synchronized (this) {
+			if (snapshot != null && !committed.isEmpty()) {
+				S next = copy(snapshot);
+				for (D delta : committed) {
+					apply(next, delta, delta.epoch != epoch);
+				}
+				committed.clear();
+				snapshot = next;
+			}
+			dirty = false;
+			return snapshot;
+		}
+	}
+
+	private synchronized void committed(D delta) {
+		if (delta.reload) {
+			invalidate();
+			return;
+		}
+		if (committedDuringLoad != null) {
+			committedDuringLoad.add(delta);
+		}
+		if (snapshot != null) {
+			committed.add(delta);
+			dirty = true;
+		}
+	}
+
+	private synchronized long startLoad() {
+		if (loading++ == 0) {
+			committedDuringLoad = new ArrayList<>();
+		}
+		return generation;
+	}
+
+	private S loadOrAbort() {
+		try {
+			return load();
+		} catch (RuntimeException e) {
+			synchronized (this) {
+				endLoad();
+			}
+			throw e;
+		}
+	}
+
+	/*
+	 * 동시에 load하면 먼저 시작한 load부터 커밋된 delta를 모두 replay한다. (replay는 여러 번 적용해도 안전하다)
+	 */
+	private synchronized boolean finishLoad(S loaded, long loadGeneration, boolean replace) {
+		for (D delta : committedDuringLoad) {
+			apply(loaded, delta, true);
+		}
+		endLoad();
+		if (loadGeneration != generation || (!replace && snapshot != null) || currentDelta() != null) {
+			return false;
+		}
+		snapshot = loaded;
+		committed.clear();
+		dirty = false;
+		epoch++;
+		return true;
+	}
+
+	private void endLoad() {
+		if (--loading == 0) {
+			committedDuringLoad = null;
+		}
+	}
+
+	/**
+	 * 트랜잭션 하나의 변경
+	 */
+	public static class Delta {
+
+		// delta를 만들 때 저장되어 있던 스냅샷
+		long epoch;
+		boolean reload;
+
+		/**
+		 * 무엇이 바뀌었는지 모른다. 커밋되면 스냅샷을 다시 만든다.
+		 */
+		public void reload() {
+			reload = true;
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package study.querydsl.repository.support;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import study.querydsl.entity.EntityChangeEvent;
+
+/**
+ * 페이징 total count 캐시
+ *
+ * 같은 검색 조건으로 페이지를 넘길 때마다 count 쿼리가 다시 실행되지 않도록 TTL 동안 결과를 재사용한다.
+ * Member/Team이 저장, 변경, 삭제되거나 벌크 연산이 실행되면 바로 비우고, 트랜잭션이 끝난 뒤 한 번 더 비운다.
+ * (커밋 전에 다른 트랜잭션이 다시 센 이전 total을 버리기 위해, ChangedInTransaction)
+ */
+@Component
+public class CountCache {
+
+	private final TtlCache<Object, Long> cache;
+	private final ChangedInTransaction changes;
+
+	public CountCache(@Value("${member.count-cache.ttl:30s}") Duration ttl,
+			@Value("${member.count-cache.max-size:1000}") int maxSize) {
+		this.cache = new TtlCache<>(ttl, maxSize);
+		this.changes = new ChangedInTransaction(cache::invalidateAll);
+	}
+
+	/**
+	 * @param key 검색 조건처럼 count 결과를 결정하는 값 (equals/hashCode 필요)
+	 */
+	public long get(Object key, LongSupplier counter) {
+		return cache.get(key, counter::getAsLong);
+	}
+
+	public boolean contains(Object key) {
+		return cache.contains(key);
+	}
+
+	@EventListener
+	public void onChange(EntityChangeEvent event) {
+		changes.changed();
+	}
+
+	public CacheStats stats() {
+		return cache.stats();
+	}
+}
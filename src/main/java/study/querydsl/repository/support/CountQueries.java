@@ -0,0 +1,204 @@
+package study.querydsl.repository.support;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.metamodel.EntityType;
+
+import com.querydsl.core.DefaultQueryMetadata;
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.JoinFlag;
+import com.querydsl.core.JoinType;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.TemplateExpression;
+import com.querydsl.core.types.Visitor;
+import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.jpa.JPAQueryMixin;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+/**
+ * content 쿼리에서 count 쿼리 만들기
+ *
+ * - order by, offset/limit 제거
+ * - where나 남은 join에서 참조하지 않는 to-one left join 제거 (결과 row 수가 바뀌지 않는다)
+ * - fetch join은 일반 join으로
+ * - select count(root.id)
+ *
+ * group by, having, distinct가 있으면 count 의미가 달라지므로 만들지 않는다.
+ */
+final class CountQueries {
+
+	private CountQueries() {
+	}
+
+	/**
+	 * @return 만들 수 없으면 null
+	 */
+	static JPAQuery<?> derive(EntityManager em, JPAQueryFactory queryFactory, JPAQuery<?> contentQuery) {
+		QueryMetadata metadata = contentQuery.getMetadata();
+		List<JoinExpression> joins = metadata.getJoins();
+		if (!metadata.getGroupBy().isEmpty() || metadata.getHaving() != null || metadata.isDistinct()
+				|| joins.isEmpty() || !(joins.get(0).getTarget() instanceof EntityPath)) {
+			return null;
+		}
+
+		// 뒤쪽 join부터 확인해야 제거되지 않은 join이 참조하는 앞쪽 join을 남길 수 있다.
+		Set<Expression<?>> referenced = new HashSet<>();
+		RootCollector.collect(metadata.getWhere(), referenced);
+		boolean[] keep = new boolean[joins.size()];
+		for (int i = joins.size() - 1; i >= 0; i--) {
+			JoinExpression join = joins.get(i);
+			keep[i] = i == 0 || !isRemovable(join) || referenced.contains(aliasOf(join));
+			if (keep[i]) {
+				RootCollector.collect(join.getTarget(), referenced);
+				RootCollector.collect(join.getCondition(), referenced);
+			}
+		}
+
+		DefaultQueryMetadata derived = new DefaultQueryMetadata();
+		derived.setValidate(false);
+		for (int i = 0; i < joins.size(); i++) {
+			if (!keep[i]) {
+				continue;
+			}
+			JoinExpression join = joins.get(i);
+			derived.addJoin(join.getType(), join.getTarget());
+			if (join.getCondition() != null) {
+				derived.addJoinCondition(join.getCondition());
+			}
+			for (JoinFlag flag : join.getFlags()) {
+				if (!JPAQueryMixin.FETCH.equals(flag) && !JPAQueryMixin.FETCH_ALL_PROPERTIES.equals(flag)) {
+					derived.addJoinFlag(flag);
+				}
+			}
+		}
+		if (metadata.getWhere() != null) {
+			derived.addWhere(metadata.getWhere());
+		}
+		metadata.getFlags().forEach(derived::addFlag);
+		metadata.getParams().forEach((param, value) -> bind(derived, param, value));
+		derived.setProjection(idOf(em, (EntityPath<?>) joins.get(0).getTarget()));
+		if (queryFactory instanceof TrackingJPAQueryFactory) {
+			return ((TrackingJPAQueryFactory) queryFactory).query(derived);
+		}
+		return new JPAQuery<>(em, derived);
+	}
+
+	/*
+	 * to-one 연관관계의 left join만 제거 대상이다.
+	 * inner join은 row를 거르고, 컬렉션 join이나 연관관계가 없는 join은 row 수를 늘릴 수 있다.
+	 * 별칭 없는 join(leftJoin(member.team).fetchJoin())은 참조할 수 없으므로 항상 제거된다.
+	 */
+	private static boolean isRemovable(JoinExpression join) {
+		if (join.getType() != JoinType.LEFTJOIN) {
+			return false;
+		}
+		Expression<?> association = aliasOf(join) != null ? ((Operation<?>) join.getTarget()).getArg(0) : join.getTarget();
+		return association instanceof EntityPath && ((Path<?>) association).getMetadata().getParent() != null;
+	}
+
+	private static Expression<?> aliasOf(JoinExpression join) {
+		Expression<?> target = join.getTarget();
+		if (target instanceof Operation && ((Operation<?>) target).getOperator() == Ops.ALIAS) {
+			return ((Operation<?>) target).getArg(1);
+		}
+		return null;
+	}
+
+	// 복합키면 엔티티 자체를 센다.
+	private static Expression<?> idOf(EntityManager em, EntityPath<?> root) {
+		EntityType<?> entityType = em.getMetamodel().entity(root.getType());
+		if (!entityType.hasSingleIdAttribute()) {
+			return root;
+		}
+		String idName = entityType.getId(entityType.getIdType().getJavaType()).getName();
+		return new PathBuilder<>(root.getType(), root.getMetadata()).get(idName);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> void bind(DefaultQueryMetadata metadata, ParamExpression<T> param, Object value) {
+		metadata.setParam(param, (T) value);
+	}
+
+	/**
+	 * 표현식이 참조하는 경로의 root(from/join 별칭)를 모은다.
+	 */
+	private static class RootCollector implements Visitor<Void, Set<Expression<?>>> {
+
+		private static final RootCollector INSTANCE = new RootCollector();
+
+		static void collect(Expression<?> expr, Set<Expression<?>> roots) {
+			if (expr != null) {
+				expr.accept(INSTANCE, roots);
+			}
+		}
+
+		@Override
+		public Void visit(Constant<?> expr, Set<Expression<?>> roots) {
+			return null;
+		}
+
+		@Override
+		public Void visit(FactoryExpression<?> expr, Set<Expression<?>> roots) {
+			expr.getArgs().forEach(arg -> collect(arg, roots));
+			return null;
+		}
+
+		@Override
+		public Void visit(Operation<?> expr, Set<Expression<?>> roots) {
+			expr.getArgs().forEach(arg -> collect(arg, roots));
+			return null;
+		}
+
+		@Override
+		public Void visit(ParamExpression<?> expr, Set<Expression<?>> roots) {
+			return null;
+		}
+
+		@Override
+		public Void visit(Path<?> expr, Set<Expression<?>> roots) {
+			roots.add(expr.getRoot());
+			return null;
+		}
+
+		@Override
+		public Void visit(SubQueryExpression<?> expr, Set<Expression<?>> roots) {
+			QueryMetadata metadata = expr.getMetadata();
+			for (JoinExpression join : metadata.getJoins()) {
+				collect(join.getTarget(), roots);
+				collect(join.getCondition(), roots);
+			}
+			collect(metadata.getWhere(), roots);
+			collect(metadata.getProjection(), roots);
+			metadata.getGroupBy().forEach(group -> collect(group, roots));
+			collect(metadata.getHaving(), roots);
+			for (OrderSpecifier<?> order : metadata.getOrderBy()) {
+				collect(order.getTarget(), roots);
+			}
+			return null;
+		}
+
+		@Override
+		public Void visit(TemplateExpression<?> expr, Set<Expression<?>> roots) {
+			for (Object arg : expr.getArgs()) {
+				if (arg instanceof Expression) {
+					collect((Expression<?>) arg, roots);
+				}
+			}
+			return null;
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package study.querydsl.repository.support;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.querydsl.jpa.impl.JPAQuery;
+
+/**
+ * 페이징 count 쿼리 실행기
+ *
+ * 기본은 CountCache를 거쳐 호출 스레드에서 필요할 때만 count 쿼리를 실행한다.
+ * member.concurrent-count.enabled=true 이면 content 조회 전에 count 쿼리를 별도 스레드의
+ * 읽기 전용 트랜잭션(별도 EntityManager, 커넥션)에서 먼저 시작해서 두 쿼리가 겹쳐 실행되게 한다.
+ *
+ * 읽기/쓰기 트랜잭션 안에서는 커밋하지 않은 변경이 있을 수 있으므로 동시 실행하지 않고 캐시도 쓰지 않는다.
+ * 호출 스레드에서 같은 트랜잭션으로 세야 content와 total이 맞고, 다른 트랜잭션에 보이지 않는 total이 캐시되지 않는다.
+ */
+@Component
+public class CountQueryExecutor {
+
+	private final CountCache countCache;
+	private final EntityManager em;
+	private final TransactionTemplate readOnlyTransaction;
+	private final ThreadPoolExecutor executor;
+
+	public CountQueryExecutor(CountCache countCache, EntityManager em, PlatformTransactionManager transactionManager,
+			@Value("${member.concurrent-count.enabled:false}") boolean enabled,
+			@Value("${member.concurrent-count.pool-size:4}") int poolSize,
+			@Value("${member.concurrent-count.queue-capacity:64}") int queueCapacity) {
+		this.countCache = countCache;
+		this.em = em;
+		this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+		this.readOnlyTransaction.setReadOnly(true);
+		this.readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		// 큐가 가득 차면 AbortPolicy로 거절하고, 호출 스레드에서 직렬로 실행한다.
+		this.executor = enabled ? new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("count-query-")) : null;
+	}
+
+	/**
+	 * content 조회 전에 호출한다. 반환된 PendingCount를 PageableExecutionUtils.getPage에 넘기면
+	 * count가 필요 없는 경우엔 기다리지 않고 취소된다.
+	 *
+	 * @param cacheKey count 결과를 결정하는 값 (CountCache 키)
+	 * @param countQuery content 쿼리와 공유하지 않도록 복제해서 사용한다.
+	 */
+	public PendingCount prepare(Object cacheKey, JPAQuery<?> countQuery) {
+		JPAQuery<?> query = countQuery.clone();
+		if (inReadWriteTransaction()) {
+			return PendingCount.serial(query);
+		}
+		PendingCount pending = new PendingCount(countCache, cacheKey, query);
+		if (executor == null || countCache.contains(cacheKey)) {
+			return pending;
+		}
+		try {
+			pending.start(executor, readOnlyTransaction, em);
+		} catch (RejectedExecutionException e) {
+			// 시작하지 않았으면 필요할 때 호출 스레드에서 실행한다.
+		}
+		return pending;
+	}
+
+	private static boolean inReadWriteTransaction() {
+		return TransactionSynchronizationManager.isActualTransactionActive()
+				&& !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package study.querydsl.repository.support;
+
+import org.springframework.util.Assert;
+
+/**
+ * 삭제를 지원하는 Bloom filter (counting Bloom filter)
+ *
+ * 비트 대신 1byte 카운터를 두고 add는 k개 카운터를 올리고 remove는 내린다.
+ * mightContain이 false면 확실히 없는 값이고, true면 있을 수도 있는 값이다.
+ * 카운터가 255에 닿으면 더 이상 올리지도 내리지도 않는다. (내리면 다른 값이 없는 것으로 보일 수 있다)
+ * add하지 않은 값을 remove하면 다른 값이 없는 것으로 보일 수 있으므로 호출하는 쪽에서 짝을 맞춰야 한다.
+ *
+ * 카운터 수(m)와 해시 수(k)는 예상 원소 수(n)와 오탐률(p)로 정한다.
+ * m = -n ln p / (ln 2)^2, k = m / n * ln 2. maxBytes를 넘으면 maxBytes로 줄인다. (오탐률이 올라간다)
+ * 동기화하지 않는다.
+ */
+public class CountingBloomFilter {
+
+	private static final int MAX_COUNT = 0xFF;
+
+	private final byte[] counters;
+	private final int hashCount;
+	private final long capacity;
+	private long size;
+
+	public CountingBloomFilter(long expectedInsertions, double falsePositiveRate, long maxBytes) {
+		Assert.isTrue(expectedInsertions > 0, "expectedInsertions는 1 이상이어야 합니다.");
+		Assert.isTrue(falsePositiveRate > 0 && falsePositiveRate < 1, "falsePositiveRate는 0과 1 사이여야 합니다.");
+		Assert.isTrue(maxBytes > 0, "maxBytes는 1 이상이어야 합니다.");
+		double optimal = -expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+		int length = (int) Math.min(Math.min((long) Math.ceil(optimal), maxBytes), Integer.MAX_VALUE - 8);
+		this.counters = new byte[Math.max(length, 1)];
+		this.hashCount = Math.max(1, (int) Math.round((double) counters.length / expectedInsertions * Math.log(2)));
+		this.capacity = expectedInsertions;
+	}
+
+	public CountingBloomFilter(CountingBloomFilter source) {
+		this.counters = source.counters.clone();
+		this.hashCount = source.hashCount;
+		this.capacity = source.capacity;
+		this.size = source.size;
+	}
+
+	public void add(CharSequence value) {
+		long hash = hash(value);
+		for (int i = 0; i < hashCount; i++) {
+			int index = index(hash, i);
+			int count = counters[index] & MAX_COUNT;
+			if (count < MAX_COUNT) {
+				counters[index] = (byte) (count + 1);
+			}
+		}
+		size++;
+	}
+
+	public void remove(CharSequence value) {
+		long hash = hash(value);
+		for (int i = 0; i < hashCount; i++) {
+			int index = index(hash, i);
+			int count = counters[index] & MAX_COUNT;
+			if (count > 0 && count < MAX_COUNT) {
+				counters[index] = (byte) (count - 1);
+			}
+		}
+		size--;
+	}
+
+	public boolean mightContain(CharSequence value) {
+		long hash = hash(value);
+		for (int i = 0; i < hashCount; i++) {
+			if (counters[index(hash, i)] == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// 들어 있는 원소 수 (add - remove)
+	public long getSize() {
+		return size;
+	}
+
+	// 오탐률을 지키는 원소 수 (expectedInsertions)
+	public long getCapacity() {
+		return capacity;
+	}
+
+	public int getByteSize() {
+		return counters.length;
+	}
+
+	public int getHashCount() {
+		return hashCount;
+	}
+
+	// 64bit 해시 하나를 둘로 나눠 h1 + i * h2로 k개 위치를 만든다. (double hashing)
+	private int index(long hash, int i) {
+		int combined = (int) hash + i * (int) (hash >>> 32);
+		return (combined & Integer.MAX_VALUE) % counters.length;
+	}
+
+	// FNV-1a + murmur3 fmix64
+	private static long hash(CharSequence value) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < value.length(); i++) {
+			hash ^= value.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
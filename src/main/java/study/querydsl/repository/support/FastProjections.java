@@ -0,0 +1,303 @@
+package study.querydsl.repository.support;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.FactoryExpressionBase;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Visitor;
+
+/**
+ * Projections.bean / fields / constructor 대체
+ *
+ * Projections.*는 row마다 리플렉션(Method.invoke, Field.set, Constructor.newInstance)으로 DTO를 만든다.
+ * 여기서는 DTO 타입과 바인딩 이름(생성자는 인자 타입)별로 접근자를 한 번만 만들어 캐시하고,
+ * row마다 LambdaMetafactory로 만든 람다나 MethodHandle을 호출한다.
+ * 사용법은 Projections.*와 같고, QBean처럼 null 값은 setter/field에 넣지 않는다.
+ *
+ * 캐시는 DTO 타입별(ClassValue)로 두므로 DTO 클래스가 언로드되면(재배포, devtools 재시작) 함께 사라지고
+ * 클래스로더를 붙잡지 않는다. 타입 하나의 키는 (방식, 바인딩 이름 또는 인자 타입)이라 코드에 있는 projection 모양 수만큼만 생긴다.
+ * (요청 값으로 이름을 만들면 안 된다)
+ */
+public final class FastProjections {
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+	private static final ClassValue<ConcurrentMap<List<Object>, RowMapper<?>>> MAPPERS = new ClassValue<ConcurrentMap<List<Object>, RowMapper<?>>>() {
+		@Override
+		protected ConcurrentMap<List<Object>, RowMapper<?>> computeValue(Class<?> type) {
+			return new ConcurrentHashMap<>();
+		}
+	};
+
+	private FastProjections() {
+	}
+
+	public static <T> FactoryExpression<T> bean(Class<? extends T> type, Expression<?>... exprs) {
+		List<String> names = names(exprs);
+		RowMapper<T> mapper = mapper(type, Arrays.asList("bean", names), () -> beanMapper(type, names));
+		return new FastProjection<>(type, exprs, mapper);
+	}
+
+	public static <T> FactoryExpression<T> fields(Class<? extends T> type, Expression<?>... exprs) {
+		List<String> names = names(exprs);
+		RowMapper<T> mapper = mapper(type, Arrays.asList("fields", names), () -> fieldMapper(type, names));
+		return new FastProjection<>(type, exprs, mapper);
+	}
+
+	public static <T> FactoryExpression<T> constructor(Class<? extends T> type, Expression<?>... exprs) {
+		List<Class<?>> argTypes = new ArrayList<>(exprs.length);
+		for (Expression<?> expr : exprs) {
+			argTypes.add(expr.getType());
+		}
+		RowMapper<T> mapper = mapper(type, Arrays.asList("constructor", argTypes), () -> constructorMapper(type, argTypes));
+		return new FastProjection<>(type, exprs, mapper);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> RowMapper<T> mapper(Class<?> type, List<Object> key, Supplier<RowMapper<?>> factory) {
+		return (RowMapper<T>) MAPPERS.get(type).computeIfAbsent(key, k -> factory.get());
+	}
+
+	// QBean과 같은 규칙: 경로면 경로 이름, as(...)면 별칭
+	private static List<String> names(Expression<?>[] exprs) {
+		List<String> names = new ArrayList<>(exprs.length);
+		for (Expression<?> expr : exprs) {
+			if (expr instanceof Path) {
+				names.add(((Path<?>) expr).getMetadata().getName());
+			} else if (expr instanceof Operation && ((Operation<?>) expr).getOperator() == Ops.ALIAS) {
+				names.add(((Path<?>) ((Operation<?>) expr).getArg(1)).getMetadata().getName());
+			} else {
+				throw new IllegalArgumentException("별칭이 없는 표현식은 bean/fields에 바인딩할 수 없습니다: " + expr);
+			}
+		}
+		return names;
+	}
+
+	private static RowMapper<?> beanMapper(Class<?> type, List<String> names) {
+		List<BiConsumer<Object, Object>> setters = new ArrayList<>(names.size());
+		for (String name : names) {
+			PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(type, name);
+			if (descriptor == null || descriptor.getWriteMethod() == null) {
+				throw new IllegalArgumentException(type.getName() + "에 " + name + " setter가 없습니다.");
+			}
+			setters.add(setter(descriptor.getWriteMethod()));
+		}
+		return new PropertyMapper(instantiator(type), setters);
+	}
+
+	private static RowMapper<?> fieldMapper(Class<?> type, List<String> names) {
+		List<BiConsumer<Object, Object>> setters = new ArrayList<>(names.size());
+		for (String name : names) {
+			Field field = ReflectionUtils.findField(type, name);
+			if (field == null || Modifier.isFinal(field.getModifiers())) {
+				throw new IllegalArgumentException(type.getName() + "에 값을 넣을 수 있는 " + name + " 필드가 없습니다.");
+			}
+			try {
+				setters.add(invoker(privateLookup(field.getDeclaringClass()).unreflectSetter(field)));
+			} catch (IllegalAccessException e) {
+				throw new IllegalArgumentException(type.getName() + "." + name + " 필드에 접근할 수 없습니다.", e);
+			}
+		}
+		return new PropertyMapper(instantiator(type), setters);
+	}
+
+	private static RowMapper<?> constructorMapper(Class<?> type, List<Class<?>> argTypes) {
+		Constructor<?> constructor = findConstructor(type, argTypes);
+		try {
+			MethodHandle handle = lookup(constructor).unreflectConstructor(constructor)
+					.asSpreader(Object[].class, argTypes.size())
+					.asType(MethodType.methodType(Object.class, Object[].class));
+			return row -> {
+				try {
+					return handle.invokeExact(row);
+				} catch (Throwable e) {
+					throw rethrow(e);
+				}
+			};
+		} catch (IllegalAccessException e) {
+			throw new IllegalArgumentException(type.getName() + " 생성자에 접근할 수 없습니다.", e);
+		}
+	}
+
+	private static Constructor<?> findConstructor(Class<?> type, List<Class<?>> argTypes) {
+		for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+			Class<?>[] parameterTypes = constructor.getParameterTypes();
+			if (parameterTypes.length != argTypes.size()) {
+				continue;
+			}
+			boolean matches = true;
+			for (int i = 0; i < parameterTypes.length && matches; i++) {
+				matches = ClassUtils.isAssignable(parameterTypes[i], argTypes.get(i));
+			}
+			if (matches) {
+				return constructor;
+			}
+		}
+		throw new IllegalArgumentException(type.getName() + "에 " + argTypes + "를 받는 생성자가 없습니다.");
+	}
+
+	/*
+	 * public 생성자/setter는 LambdaMetafactory로 Supplier/BiConsumer 구현체를 만들어 일반 메서드 호출처럼 실행한다.
+	 * 접근 제한이 있으면 private lookup으로 얻은 MethodHandle을 호출한다.
+	 */
+	@SuppressWarnings("unchecked")
+	private static Supplier<Object> instantiator(Class<?> type) {
+		try {
+			Constructor<?> constructor = type.getDeclaredConstructor();
+			MethodHandle handle = lookup(constructor).unreflectConstructor(constructor);
+			if (!isPublic(constructor)) {
+				MethodHandle generic = handle.asType(MethodType.methodType(Object.class));
+				return () -> {
+					try {
+						return generic.invokeExact();
+					} catch (Throwable e) {
+						throw rethrow(e);
+					}
+				};
+			}
+			CallSite site = LambdaMetafactory.metafactory(LOOKUP, "get",
+					MethodType.methodType(Supplier.class),
+					MethodType.methodType(Object.class),
+					handle,
+					MethodType.methodType(type));
+			return (Supplier<Object>) site.getTarget().invokeExact();
+		} catch (NoSuchMethodException e) {
+			throw new IllegalArgumentException(type.getName() + "에 기본 생성자가 없습니다.", e);
+		} catch (Throwable e) {
+			throw new IllegalArgumentException(type.getName() + " 기본 생성자에 접근할 수 없습니다.", e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static BiConsumer<Object, Object> setter(Method method) {
+		try {
+			MethodHandle handle = lookup(method).unreflect(method);
+			if (!isPublic(method)) {
+				return invoker(handle);
+			}
+			CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept",
+					MethodType.methodType(BiConsumer.class),
+					MethodType.methodType(void.class, Object.class, Object.class),
+					handle,
+					MethodType.methodType(void.class, method.getDeclaringClass(),
+							ClassUtils.resolvePrimitiveIfNecessary(method.getParameterTypes()[0])));
+			return (BiConsumer<Object, Object>) site.getTarget().invokeExact();
+		} catch (Throwable e) {
+			throw new IllegalArgumentException(method + "에 접근할 수 없습니다.", e);
+		}
+	}
+
+	private static BiConsumer<Object, Object> invoker(MethodHandle handle) {
+		MethodHandle generic = handle.asType(MethodType.methodType(void.class, Object.class, Object.class));
+		return (target, value) -> {
+			try {
+				generic.invokeExact(target, value);
+			} catch (Throwable e) {
+				throw rethrow(e);
+			}
+		};
+	}
+
+	private static boolean isPublic(Member member) {
+		return Modifier.isPublic(member.getModifiers()) && Modifier.isPublic(member.getDeclaringClass().getModifiers());
+	}
+
+	private static MethodHandles.Lookup lookup(Member member) throws IllegalAccessException {
+		return isPublic(member) ? LOOKUP : privateLookup(member.getDeclaringClass());
+	}
+
+	private static MethodHandles.Lookup privateLookup(Class<?> type) throws IllegalAccessException {
+		return MethodHandles.privateLookupIn(type, LOOKUP);
+	}
+
+	private static RuntimeException rethrow(Throwable e) {
+		if (e instanceof RuntimeException) {
+			return (RuntimeException) e;
+		}
+		if (e instanceof Error) {
+			throw (Error) e;
+		}
+		return new IllegalStateException(e);
+	}
+
+	@FunctionalInterface
+	private interface RowMapper<T> {
+		T map(Object[] row);
+	}
+
+	private static final class PropertyMapper implements RowMapper<Object> {
+		private final Supplier<Object> instantiator;
+		private final BiConsumer<Object, Object>[] setters;
+
+		@SuppressWarnings("unchecked")
+		PropertyMapper(Supplier<Object> instantiator, List<BiConsumer<Object, Object>> setters) {
+			this.instantiator = instantiator;
+			this.setters = (BiConsumer<Object, Object>[]) setters.toArray(new BiConsumer<?, ?>[0]);
+		}
+
+		@Override
+		public Object map(Object[] row) {
+			Object instance = instantiator.get();
+			for (int i = 0; i < setters.length; i++) {
+				if (row[i] != null) {
+					setters[i].accept(instance, row[i]);
+				}
+			}
+			return instance;
+		}
+	}
+
+	private static final class FastProjection<T> extends FactoryExpressionBase<T> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<Expression<?>> args;
+		private final transient RowMapper<T> mapper;
+
+		FastProjection(Class<? extends T> type, Expression<?>[] args, RowMapper<T> mapper) {
+			super(type);
+			this.args = Collections.unmodifiableList(Arrays.asList(args.clone()));
+			this.mapper = mapper;
+		}
+
+		@Override
+		public List<Expression<?>> getArgs() {
+			return args;
+		}
+
+		@Override
+		public T newInstance(Object... row) {
+			return mapper.map(row);
+		}
+
+		@Override
+		public <R, C> R accept(Visitor<R, C> v, C context) {
+			return v.visit(this, context);
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package study.querydsl.repository.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.util.Assert;
+
+import com.querydsl.core.types.CollectionExpression;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Path;
+
+import lombok.Getter;
+
+/**
+ * 조회한 엔티티의 연관관계를 어떻게 가져올지 정한 이름 있는 계획
+ *
+ * - fetchJoin: content 쿼리에 left join fetch 추가 (SQL 1번, 컬렉션이면 in-memory distinct)
+ * - entityGraph: @NamedEntityGraph를 fetchgraph 힌트로 적용
+ * - batch: content 조회 후 연관관계를 batchSize개씩 IN 조건으로 한 번에 가져온다. (SQL 1 + ceil(N / batchSize)번)
+ *
+ * 컬렉션을 fetch join하면 페이징이 메모리에서 일어나고, 두 단계 이상 건너간 List 컬렉션은 row 수만큼 중복되므로
+ * 페이징 쿼리의 컬렉션이나 root의 컬렉션이 아닌 컬렉션(ex. member.team.members)은 batch를 사용한다.
+ *
+ * <pre>
+ * registerFetchPlan(FetchPlan.named("team").fetchJoin(member.team));
+ * List&lt;Member&gt; result = fetch(selectFrom(member), "team");
+ * </pre>
+ */
+@Getter
+public class FetchPlan {
+
+	public static final String LEAN = "lean";
+
+	private final String name;
+	private final List<FetchJoin> fetchJoins = new ArrayList<>();
+	private final List<BatchFetch> batchFetches = new ArrayList<>();
+	private String entityGraph;
+
+	private FetchPlan(String name) {
+		this.name = name;
+	}
+
+	public static FetchPlan named(String name) {
+		Assert.hasText(name, "FetchPlan name must not be empty!");
+		return new FetchPlan(name);
+	}
+
+	/**
+	 * 연관관계를 가져오지 않는다. (지연 로딩 그대로)
+	 */
+	public static FetchPlan lean() {
+		return new FetchPlan(LEAN);
+	}
+
+	public <P> FetchPlan fetchJoin(EntityPath<P> association) {
+		return fetchJoin(association, null);
+	}
+
+	/**
+	 * @param alias 이어지는 fetch join에서 사용할 별칭
+	 */
+	public <P> FetchPlan fetchJoin(EntityPath<P> association, EntityPath<P> alias) {
+		fetchJoins.add(new FetchJoin(association, alias, false));
+		return this;
+	}
+
+	public <P> FetchPlan fetchJoin(CollectionExpression<?, P> association) {
+		fetchJoins.add(new FetchJoin((Path<?>) association, null, true));
+		return this;
+	}
+
+	public FetchPlan entityGraph(String entityGraph) {
+		this.entityGraph = entityGraph;
+		return this;
+	}
+
+	/**
+	 * @param association root에서 이어지는 연관관계 경로 (ex. member.team, member.team.members)
+	 */
+	public FetchPlan batch(Path<?> association, int batchSize) {
+		Assert.isTrue(!association.getMetadata().isRoot(), "연관관계 경로가 아니다: " + association);
+		Assert.isTrue(batchSize > 0, "batchSize must be positive!");
+		batchFetches.add(new BatchFetch(association, batchSize));
+		return this;
+	}
+
+	/**
+	 * 결과 row가 root 엔티티보다 많아질 수 있는지 (distinct 필요)
+	 */
+	boolean isMultiplying() {
+		return entityGraph != null || hasCollectionFetchJoin();
+	}
+
+	boolean hasCollectionFetchJoin() {
+		return fetchJoins.stream().anyMatch(FetchJoin::isCollection);
+	}
+
+	public List<FetchJoin> getFetchJoins() {
+		return Collections.unmodifiableList(fetchJoins);
+	}
+
+	public List<BatchFetch> getBatchFetches() {
+		return Collections.unmodifiableList(batchFetches);
+	}
+
+	@Getter
+	public static class FetchJoin {
+		private final Path<?> association;
+		private final EntityPath<?> alias;
+		private final boolean collection;
+
+		FetchJoin(Path<?> association, EntityPath<?> alias, boolean collection) {
+			this.association = association;
+			this.alias = alias;
+			this.collection = collection;
+		}
+	}
+
+	@Getter
+	public static class BatchFetch {
+		private final Path<?> association;
+		private final int batchSize;
+
+		BatchFetch(Path<?> association, int batchSize) {
+			this.association = association;
+			this.batchSize = batchSize;
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package study.querydsl.repository.support;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.Status;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+/**
+ * id 목록으로 엔티티 한 번에 조회하기 (findById 반복 대신)
+ *
+ * - 영속성 컨텍스트에 이미 있는 엔티티는 쿼리 없이 그대로 쓴다. (삭제 예정인 엔티티는 없는 것으로 본다)
+ * - 나머지 id는 max-in-size개씩 끊어서 id in (...)으로 조회한다.
+ * - IN 파라미터 수를 2의 거듭제곱으로 맞춘다. (모자라면 마지막 id 반복)
+ *   파라미터 수마다 SQL이 달라져서 쿼리 plan 캐시가 id 수만큼 늘어나는 것을 막는다.
+ * - 결과는 입력한 id 순서대로 돌려준다. 없는 id는 빠지고, 중복된 id는 중복해서 들어간다.
+ */
+@Component
+public class IdBatchLoader {
+
+	private final EntityManager em;
+	private final JPAQueryFactory queryFactory;
+	private final int maxInSize;
+
+	public IdBatchLoader(EntityManager em, JPAQueryFactory queryFactory,
+			@Value("${member.multi-get.max-in-size:512}") int maxInSize) {
+		Assert.isTrue(maxInSize > 0, "max-in-size는 1 이상이어야 합니다.");
+		this.em = em;
+		this.queryFactory = queryFactory;
+		// 패딩해도 max-in-size를 넘지 않도록 2의 거듭제곱으로 내린다.
+		this.maxInSize = Integer.highestOneBit(maxInSize);
+	}
+
+	/**
+	 * <pre>
+	 * findAllByIds(member, member.id, Arrays.asList(3L, 1L, 2L))
+	 * </pre>
+	 */
+	public <T> List<T> findAllByIds(EntityPath<T> entity, NumberPath<Long> id, Collection<Long> ids) {
+		if (ids.isEmpty()) {
+			return Collections.emptyList();
+		}
+		SessionImplementor session = em.unwrap(SessionImplementor.class);
+		EntityPersister persister = session.getFactory().getMetamodel().entityPersister(entity.getType());
+		PersistenceContext persistenceContext = session.getPersistenceContext();
+
+		Map<Long, T> found = new HashMap<>();
+		List<Long> missing = new ArrayList<>();
+		for (Long value : new LinkedHashSet<>(ids)) {
+			if (value == null) {
+				continue;
+			}
+			Object managed = persistenceContext.getEntity(session.generateEntityKey(value, persister));
+			if (managed == null) {
+				missing.add(value);
+				continue;
+			}
+			EntityEntry entry = persistenceContext.getEntry(managed);
+			if (entry.getStatus() != Status.DELETED && entry.getStatus() != Status.GONE) {
+				found.put(value, entity.getType().cast(managed));
+			}
+		}
+
+		for (int from = 0; from < missing.size(); from += maxInSize) {
+			List<Long> chunk = padded(missing.subList(from, Math.min(from + maxInSize, missing.size())));
+			for (T loaded : queryFactory.selectFrom(entity).where(id.in(chunk)).fetch()) {
+				found.put((Long) persister.getIdentifier(loaded, session), loaded);
+			}
+		}
+
+		List<T> result = new ArrayList<>(ids.size());
+		for (Long value : ids) {
+			T loaded = found.get(value);
+			if (loaded != null) {
+				result.add(loaded);
+			}
+		}
+		return result;
+	}
+
+	private static List<Long> padded(List<Long> chunk) {
+		int size = chunk.size() == 1 ? 1 : Integer.highestOneBit(chunk.size() - 1) << 1;
+		List<Long> padded = new ArrayList<>(size);
+		padded.addAll(chunk);
+		while (padded.size() < size) {
+			padded.add(chunk.get(chunk.size() - 1));
+		}
+		return padded;
+	}
+}
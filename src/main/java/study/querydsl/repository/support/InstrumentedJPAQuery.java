@@ -0,0 +1,101 @@
+package study.querydsl.repository.support;
+
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import com.querydsl.core.DefaultQueryMetadata;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.QueryResults;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+
+import study.querydsl.metrics.QueryMetricsRegistry;
+import study.querydsl.metrics.QuerySample;
+
+/**
+ * fetch, fetchCount, fetchResults, fetchOne의 실행 시간, row 수, SQL 수를 QueryMetricsRegistry에 기록하는 JPAQuery
+ * fingerprint는 실행할 때 직렬화된 JPQL을 그대로 사용한다. (추가 직렬화 비용 없음)
+ * fetchResults도 count 쿼리가 아니라 content 쿼리의 JPQL로 기록한다.
+ */
+public class InstrumentedJPAQuery<T> extends JPAQuery<T> {
+
+	private static final long serialVersionUID = 1L;
+
+	private final transient QueryMetricsRegistry registry;
+	private final String repositoryMethod;
+	// 마지막으로 직렬화된 content 쿼리와 count 쿼리
+	private transient String contentJpql;
+	private transient String countJpql;
+
+	public InstrumentedJPAQuery(EntityManager em, JPQLTemplates templates, QueryMetricsRegistry registry) {
+		this(em, templates, new DefaultQueryMetadata(), registry);
+	}
+
+	public InstrumentedJPAQuery(EntityManager em, JPQLTemplates templates, QueryMetadata metadata, QueryMetricsRegistry registry) {
+		this(em, templates, metadata, registry, QuerySample.currentRepositoryMethod());
+	}
+
+	private InstrumentedJPAQuery(EntityManager em, JPQLTemplates templates, QueryMetadata metadata,
+			QueryMetricsRegistry registry, String repositoryMethod) {
+		super(em, templates, metadata);
+		this.registry = registry;
+		this.repositoryMethod = repositoryMethod;
+	}
+
+	@Override
+	public List<T> fetch() {
+		QuerySample sample = QuerySample.start(repositoryMethod);
+		List<T> result = super.fetch();
+		sample.stop(registry, "fetch", contentJpql, result.size());
+		return result;
+	}
+
+	@Override
+	public long fetchCount() {
+		QuerySample sample = QuerySample.start(repositoryMethod);
+		long count = super.fetchCount();
+		sample.stop(registry, "fetchCount", countJpql, 1);
+		return count;
+	}
+
+	@Override
+	public QueryResults<T> fetchResults() {
+		QuerySample sample = QuerySample.start(repositoryMethod);
+		contentJpql = null;
+		QueryResults<T> results = super.fetchResults();
+		// 전체 수가 0이면 content 쿼리를 실행하지 않으므로 직렬화되지 않는다.
+		String jpql = contentJpql != null ? contentJpql : serialize(false).toString();
+		sample.stop(registry, "fetchResults", jpql, results.getResults().size());
+		return results;
+	}
+
+	@Override
+	public T fetchOne() {
+		QuerySample sample = QuerySample.start(repositoryMethod);
+		T result = super.fetchOne();
+		sample.stop(registry, "fetchOne", contentJpql, result != null ? 1 : 0);
+		return result;
+	}
+
+	@Override
+	protected JPQLSerializer serialize(boolean forCountRow) {
+		JPQLSerializer serializer = super.serialize(forCountRow);
+		if (forCountRow) {
+			countJpql = serializer.toString();
+		} else {
+			contentJpql = serializer.toString();
+		}
+		return serializer;
+	}
+
+	// CountQueryExecutor처럼 clone해서 실행하는 쿼리도 같은 리포지토리 메서드로 기록한다.
+	@Override
+	public InstrumentedJPAQuery<T> clone(EntityManager entityManager, JPQLTemplates templates) {
+		InstrumentedJPAQuery<T> query = new InstrumentedJPAQuery<>(entityManager, templates, getMetadata().clone(),
+				registry, repositoryMethod);
+		query.clone(this);
+		return query;
+	}
+}
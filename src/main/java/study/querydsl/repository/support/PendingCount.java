@@ -0,0 +1,113 @@
+package study.querydsl.repository.support;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.Session;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.querydsl.jpa.impl.JPAQuery;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import study.querydsl.metrics.SqlRecording;
+
+/**
+ * 시작되었거나(동시 실행) 아직 시작되지 않은 count 쿼리 결과
+ * PageableExecutionUtils가 count를 요청할 때만 결과를 기다리고, 쓰이지 않으면 close에서 취소한다.
+ *
+ * 동시 실행은 count 쿼리를 먼저 잡은 쪽이 실행한다.
+ * 풀 스레드가 아직 잡지 않았으면 호출 스레드가 직접 실행하므로, 커넥션을 가진 호출 스레드가
+ * 커넥션을 기다리는 풀 스레드를 기다리지 않는다.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class PendingCount implements LongSupplier, AutoCloseable {
+
+	// null이면 캐시하지 않는다.
+	private final CountCache countCache;
+	private final Object cacheKey;
+	private final JPAQuery<?> countQuery;
+
+	private final AtomicBoolean claimed = new AtomicBoolean();
+	private CompletableFuture<Long> future;
+	// 풀 스레드에서 count 쿼리를 실행하는 동안의 세션 (close에서 취소)
+	private Session running;
+	private volatile boolean cancelled;
+
+	// 캐시 없이 필요할 때 호출 스레드에서 실행
+	public static PendingCount serial(JPAQuery<?> countQuery) {
+		return new PendingCount(null, null, countQuery);
+	}
+
+	/**
+	 * transaction으로 새 트랜잭션(커넥션)을 연 뒤에 count 쿼리를 잡는다.
+	 * 풀 스레드의 SQL도 호출 스레드의 SqlRecording(SQL budget)에 기록한다.
+	 */
+	void start(Executor executor, TransactionTemplate transaction, EntityManager em) {
+		future = CompletableFuture.supplyAsync(SqlRecording.propagate(() -> transaction.execute(status -> {
+			if (!claimed.compareAndSet(false, true)) {
+				return null;
+			}
+			setRunning(em.unwrap(Session.class));
+			try {
+				return countQuery.fetchCount();
+			} finally {
+				setRunning(null);
+			}
+		})), executor);
+	}
+
+	@Override
+	public long getAsLong() {
+		if (countCache == null) {
+			return countQuery.fetchCount();
+		}
+		if (future == null || claimed.compareAndSet(false, true)) {
+			return countCache.get(cacheKey, countQuery::fetchCount);
+		}
+		return countCache.get(cacheKey, future::join);
+	}
+
+	/**
+	 * 아직 시작하지 않은 count는 실행되지 않게 하고, 실행 중이면 JDBC 쿼리를 취소한다.
+	 * 응답 내용은 이미 만들어졌으므로 취소에 실패해도 예외를 던지지 않는다.
+	 * (세션이 쿼리를 실행하고 있지 않으면 H2는 "Cannot cancel query"로 실패한다)
+	 */
+	@Override
+	public void close() {
+		if (future == null) {
+			return;
+		}
+		if (claimed.compareAndSet(false, true)) {
+			cancelled = true;
+			return;
+		}
+		synchronized (this) {
+			if (running == null || future.isDone()) {
+				return;
+			}
+			cancelled = true;
+			try {
+				running.cancelQuery();
+			} catch (RuntimeException e) {
+				log.debug("count query cancel failed", e);
+			}
+		}
+	}
+
+	/**
+	 * close에서 count 실행을 막았거나 실행 중인 쿼리의 취소를 요청했는지
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	private synchronized void setRunning(Session session) {
+		running = session;
+	}
+}
@@ -1,11 +1,23 @@
 package study.querydsl.repository.support;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
 
 import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
+import javax.persistence.PersistenceUnitUtil;
 
+import org.hibernate.annotations.QueryHints;
+
+import org.springframework.beans.PropertyAccessorFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -17,8 +29,14 @@ import org.springframework.data.repository.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.Assert;
 
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.QueryModifiers;
+import com.querydsl.core.types.CollectionExpression;
 import com.querydsl.core.types.EntityPath;
 import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.dsl.CollectionPathBase;
 import com.querydsl.core.types.dsl.PathBuilder;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
@@ -35,10 +53,13 @@ public abstract class Querydsl4RepositorySupport {
 	private Querydsl querydsl;
 	private EntityManager entityManager;
 	private JPAQueryFactory queryFactory;
+	private CountQueryExecutor countQueryExecutor;
+	private final Map<String, FetchPlan> fetchPlans = new HashMap<>();
 
 	public Querydsl4RepositorySupport(Class<?> domainClass) {
 		Assert.notNull(domainClass, "Domain class must not be null!");
 		this.domainClass = domainClass;
+		registerFetchPlan(FetchPlan.lean());
 	}
 
 	@Autowired
@@ -50,7 +71,20 @@ public abstract class Querydsl4RepositorySupport {
 		EntityPath path = resolver.createPath(entityInformation.getJavaType());
 		this.entityManager = entityManager;
 		this.querydsl = new Querydsl(entityManager, new PathBuilder<>(path.getType(), path.getMetadata()));
-		this.queryFactory = new JPAQueryFactory(entityManager);
+		if (this.queryFactory == null) {
+			this.queryFactory = new JPAQueryFactory(entityManager);
+		}
+	}
+
+	// 애플리케이션의 JPAQueryFactory 빈(TrackingJPAQueryFactory)이 있으면 그것을 사용한다.
+	@Autowired(required = false)
+	public void setQueryFactory(JPAQueryFactory queryFactory) {
+		this.queryFactory = queryFactory;
+	}
+
+	@Autowired(required = false)
+	public void setCountQueryExecutor(CountQueryExecutor countQueryExecutor) {
+		this.countQueryExecutor = countQueryExecutor;
 	}
 
 	@PostConstruct
@@ -80,17 +114,196 @@ public abstract class Querydsl4RepositorySupport {
 		return getQueryFactory().selectFrom(from);
 	}
 
+	protected void registerFetchPlan(FetchPlan fetchPlan) {
+		fetchPlans.put(fetchPlan.getName(), fetchPlan);
+	}
+
+	protected FetchPlan getFetchPlan(String name) {
+		FetchPlan fetchPlan = fetchPlans.get(name);
+		if (fetchPlan == null) {
+			throw new IllegalArgumentException("등록되지 않은 FetchPlan: " + name);
+		}
+		return fetchPlan;
+	}
+
+	/**
+	 * 이름으로 등록한 FetchPlan을 적용해서 조회한다.
+	 */
+	protected <T> List<T> fetch(JPAQuery<T> query, String fetchPlan) {
+		return fetch(query, getFetchPlan(fetchPlan), false);
+	}
+
+	/**
+	 * 읽기 전용 모드로 조회한다.
+	 * 조회한 엔티티는 영속성 컨텍스트에 read-only로 들어가서 스냅샷을 만들지 않고 flush 때 변경 감지도 하지 않는다.
+	 * 엔티티를 수정해도 DB에 반영되지 않으므로 화면/응답용 대량 조회에만 사용한다.
+	 * DTO 조회는 원래 영속성 컨텍스트에 들어가지 않으므로 필요 없다.
+	 */
+	protected <T> List<T> fetchReadOnly(JPAQuery<T> query) {
+		return readOnly(query).fetch();
+	}
+
+	/**
+	 * FetchPlan의 fetch join, batch 조회로 함께 로딩되는 엔티티도 read-only가 된다.
+	 */
+	protected <T> List<T> fetchReadOnly(JPAQuery<T> query, String fetchPlan) {
+		return fetch(query, getFetchPlan(fetchPlan), true);
+	}
+
+	private <T> List<T> fetch(JPAQuery<T> query, FetchPlan plan, boolean readOnly) {
+		if (readOnly) {
+			readOnly(query);
+		}
+		List<T> content = applyFetchPlan(plan, query).fetch();
+		batchFetch(plan, content, readOnly);
+		return content;
+	}
+
+	private static <T> JPAQuery<T> readOnly(JPAQuery<T> query) {
+		return query.setHint(QueryHints.READ_ONLY, true);
+	}
+
+	/**
+	 * count 쿼리는 FetchPlan을 적용하기 전의 content 쿼리로 만든다.
+	 * 컬렉션을 fetch join하는 FetchPlan은 Hibernate가 전체를 읽어 메모리에서 페이징하므로 받지 않는다. (batch 사용)
+	 */
+	protected <T> Page<T> applyPagination(Pageable pageable, String fetchPlan,
+			Function<JPAQueryFactory, JPAQuery<T>> contentQuery) {
+		FetchPlan plan = getFetchPlan(fetchPlan);
+		if (plan.hasCollectionFetchJoin()) {
+			throw new IllegalArgumentException("컬렉션을 fetch join하는 FetchPlan은 페이징할 수 없습니다: " + fetchPlan);
+		}
+		JPAQuery<T> jpaQuery = contentQuery.apply(getQueryFactory());
+		try (PendingCount total = prepareCount(deriveCountQuery(jpaQuery))) {
+			List<T> content = getQuerydsl().applyPagination(pageable, applyFetchPlan(plan, jpaQuery)).fetch();
+			batchFetch(plan, content, false);
+			return PageableExecutionUtils.getPage(content, pageable, total);
+		}
+	}
+
+	/**
+	 * count 쿼리는 content 쿼리에서 자동으로 만든다. (deriveCountQuery 참고)
+	 */
 	protected <T> Page<T> applyPagination(Pageable pageable, Function<JPAQueryFactory, JPAQuery> contentQuery) {
 		JPAQuery jpaQuery = contentQuery.apply(getQueryFactory());
-		List<T> content = getQuerydsl().applyPagination(pageable, jpaQuery).fetch();
-		return PageableExecutionUtils.getPage(content, pageable, jpaQuery::fetchCount);
+		try (PendingCount total = prepareCount(deriveCountQuery(jpaQuery))) {
+			List<T> content = getQuerydsl().applyPagination(pageable, jpaQuery).fetch();
+			return PageableExecutionUtils.getPage(content, pageable, total);
+		}
 	}
 
 	protected <T> Page<T> applyPagination(Pageable pageable, Function<JPAQueryFactory, JPAQuery> contentQuery,
 			Function<JPAQueryFactory, JPAQuery> countQuery) {
 		JPAQuery jpaContentQuery = contentQuery.apply(getQueryFactory());
-		List<T> content = getQuerydsl().applyPagination(pageable, jpaContentQuery).fetch();
 		JPAQuery countResult = countQuery.apply(getQueryFactory());
-		return PageableExecutionUtils.getPage(content, pageable, countResult::fetchCount);
+		try (PendingCount total = prepareCount(countResult)) {
+			List<T> content = getQuerydsl().applyPagination(pageable, jpaContentQuery).fetch();
+			return PageableExecutionUtils.getPage(content, pageable, total);
+		}
+	}
+
+	/**
+	 * content 쿼리에서 정렬, 참조하지 않는 to-one left join, fetch join을 걷어내고 count(id)로 바꾼다.
+	 * group by/having/distinct가 있으면 content 쿼리를 그대로 센다.
+	 */
+	protected JPAQuery<?> deriveCountQuery(JPAQuery<?> contentQuery) {
+		JPAQuery<?> countQuery = CountQueries.derive(entityManager, queryFactory, contentQuery);
+		return countQuery != null ? countQuery : contentQuery;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private <T> JPAQuery<T> applyFetchPlan(FetchPlan plan, JPAQuery<T> query) {
+		for (FetchPlan.FetchJoin fetchJoin : plan.getFetchJoins()) {
+			if (fetchJoin.isCollection()) {
+				query.leftJoin((CollectionExpression) fetchJoin.getAssociation()).fetchJoin();
+			} else if (fetchJoin.getAlias() != null) {
+				query.leftJoin((EntityPath) fetchJoin.getAssociation(), (EntityPath) fetchJoin.getAlias()).fetchJoin();
+			} else {
+				query.leftJoin((EntityPath) fetchJoin.getAssociation()).fetchJoin();
+			}
+		}
+		if (plan.getEntityGraph() != null) {
+			query.setHint("javax.persistence.fetchgraph", entityManager.getEntityGraph(plan.getEntityGraph()));
+		}
+		// 중복 root는 Hibernate가 메모리에서 제거하고 SQL에는 distinct를 붙이지 않는다.
+		if (plan.isMultiplying()) {
+			query.distinct().setHint(QueryHints.PASS_DISTINCT_THROUGH, false);
+		}
+		return query;
+	}
+
+	/*
+	 * 연관관계가 아직 로딩되지 않은 엔티티(owner)를 batchSize개씩 다시 조회하면서 연관관계를 fetch join한다.
+	 * owner는 이미 영속성 컨텍스트에 있으므로 그대로 두고 연관관계(프록시, 컬렉션)만 채워진다.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private void batchFetch(FetchPlan plan, List<?> content, boolean readOnly) {
+		PersistenceUnitUtil util = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+		for (FetchPlan.BatchFetch batch : plan.getBatchFetches()) {
+			Path<?> association = batch.getAssociation();
+			String attribute = association.getMetadata().getName();
+			List<Object> owners = new ArrayList<>();
+			for (Object owner : ownersOf(association.getMetadata().getParent(), content)) {
+				if (!util.isLoaded(owner, attribute)) {
+					owners.add(owner);
+				}
+			}
+
+			PathBuilder<?> owner = new PathBuilder<>(association.getMetadata().getParent().getType(), "owner");
+			for (int from = 0; from < owners.size(); from += batch.getBatchSize()) {
+				List<Object> chunk = owners.subList(from, Math.min(from + batch.getBatchSize(), owners.size()));
+				JPAQuery<?> query = getQueryFactory().selectFrom(owner);
+				if (association instanceof CollectionPathBase) {
+					query.leftJoin(owner.getList(attribute, ((CollectionPathBase) association).getElementType())).fetchJoin();
+				} else {
+					query.leftJoin(owner.get(attribute, association.getType())).fetchJoin();
+				}
+				if (readOnly) {
+					readOnly(query);
+				}
+				query.where(ExpressionUtils.in((Expression) owner, chunk)).fetch();
+			}
+		}
+	}
+
+	/*
+	 * root 엔티티(content)에서 경로를 따라간 엔티티들 (중복, null 제외)
+	 * 중간 엔티티가 프록시일 수 있으므로 필드가 아니라 getter로 읽는다. (프록시의 필드는 비어 있다)
+	 */
+	private List<Object> ownersOf(Path<?> path, List<?> content) {
+		if (path.getMetadata().isRoot()) {
+			List<Object> roots = new ArrayList<>();
+			for (Object entity : content) {
+				if (path.getType().isInstance(entity)) {
+					roots.add(entity);
+				}
+			}
+			return roots;
+		}
+		Set<Object> owners = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (Object parent : ownersOf(path.getMetadata().getParent(), content)) {
+			Object value = PropertyAccessorFactory.forBeanPropertyAccess(parent).getPropertyValue(path.getMetadata().getName());
+			if (value instanceof Collection) {
+				owners.addAll((Collection<?>) value);
+			} else if (value != null) {
+				owners.add(value);
+			}
+		}
+		return new ArrayList<>(owners);
+	}
+
+	/**
+	 * count 결과는 정렬과 offset/limit을 제외한 쿼리 메타데이터(조인, 조건, 파라미터 값)로 결정되므로
+	 * 그것을 키로 count 캐시를 사용한다. 동시 실행 모드면 content 조회와 겹쳐서 실행된다.
+	 * content 쿼리에 페이징이 적용되기 전에 호출해야 한다.
+	 */
+	private PendingCount prepareCount(JPAQuery<?> countQuery) {
+		if (countQueryExecutor == null) {
+			return PendingCount.serial(countQuery);
+		}
+		QueryMetadata key = countQuery.getMetadata().clone();
+		key.clearOrderBy();
+		key.setModifiers(QueryModifiers.EMPTY);
+		return countQueryExecutor.prepare(Arrays.asList(domainClass, key), countQuery);
 	}
 }
\ No newline at end of file
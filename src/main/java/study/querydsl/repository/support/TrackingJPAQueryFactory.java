@@ -0,0 +1,110 @@
+package study.querydsl.repository.support;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.context.ApplicationEventPublisher;
+
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPADeleteClause;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+
+import study.querydsl.entity.EntityChangeEvent;
+import study.querydsl.metrics.QueryMetricsRegistry;
+import study.querydsl.metrics.QuerySample;
+
+/**
+ * 벌크 연산(update/delete execute)은 영속성 컨텍스트를 거치지 않으므로 엔티티 콜백이 호출되지 않는다.
+ * execute 후에 EntityChangeEvent(BULK)를 발행해서 캐시 등이 변경을 알 수 있게 한다.
+ *
+ * QueryMetricsRegistry가 있으면 조회(InstrumentedJPAQuery)와 벌크 연산의 실행 지표도 기록한다.
+ */
+public class TrackingJPAQueryFactory extends JPAQueryFactory {
+
+	private final EntityManager entityManager;
+	private final JPQLTemplates templates;
+	private final ApplicationEventPublisher publisher;
+	private final QueryMetricsRegistry metricsRegistry;
+
+	/**
+	 * JPA 구현체는 Hibernate이므로 HQLTemplates를 사용한다.
+	 * JPAProvider.getTemplates(em)는 EntityManagerFactory를 사용하므로 빈 생성 중에 호출하면
+	 * 백그라운드 부트스트랩(엔티티 리스너 빈 생성)과 서로 기다리는 데드락이 생길 수 있다.
+	 *
+	 * @param metricsRegistry null이면 지표를 기록하지 않는다.
+	 */
+	public TrackingJPAQueryFactory(EntityManager entityManager, ApplicationEventPublisher publisher,
+			QueryMetricsRegistry metricsRegistry) {
+		this(HQLTemplates.DEFAULT, entityManager, publisher, metricsRegistry);
+	}
+
+	private TrackingJPAQueryFactory(JPQLTemplates templates, EntityManager entityManager, ApplicationEventPublisher publisher,
+			QueryMetricsRegistry metricsRegistry) {
+		super(templates, entityManager);
+		this.entityManager = entityManager;
+		this.templates = templates;
+		this.publisher = publisher;
+		this.metricsRegistry = metricsRegistry;
+	}
+
+	@Override
+	public JPAQuery<?> query() {
+		if (metricsRegistry == null) {
+			return super.query();
+		}
+		return new InstrumentedJPAQuery<Void>(entityManager, templates, metricsRegistry);
+	}
+
+	/**
+	 * 직접 만든 메타데이터로 쿼리를 만든다. (count 쿼리 자동 생성 등)
+	 */
+	public JPAQuery<?> query(QueryMetadata metadata) {
+		if (metricsRegistry == null) {
+			return new JPAQuery<Void>(entityManager, templates, metadata);
+		}
+		return new InstrumentedJPAQuery<Void>(entityManager, templates, metadata, metricsRegistry);
+	}
+
+	@Override
+	public JPAUpdateClause update(EntityPath<?> path) {
+		return new JPAUpdateClause(entityManager, path, templates) {
+			@Override
+			public long execute() {
+				QuerySample sample = QuerySample.start(null);
+				long affected = super.execute();
+				record(sample, this, affected);
+				publishBulk(path);
+				return affected;
+			}
+		};
+	}
+
+	@Override
+	public JPADeleteClause delete(EntityPath<?> path) {
+		return new JPADeleteClause(entityManager, path, templates) {
+			@Override
+			public long execute() {
+				QuerySample sample = QuerySample.start(null);
+				long affected = super.execute();
+				record(sample, this, affected);
+				publishBulk(path);
+				return affected;
+			}
+		};
+	}
+
+	// 벌크 연산의 toString()은 JPQL이다.
+	private void record(QuerySample sample, Object clause, long affected) {
+		if (metricsRegistry != null) {
+			sample.stop(metricsRegistry, "execute", clause.toString(), affected);
+		}
+	}
+
+	private void publishBulk(EntityPath<?> path) {
+		publisher.publishEvent(new EntityChangeEvent(path.getType(), EntityChangeEvent.Type.BULK));
+	}
+}
@@ -0,0 +1,129 @@
+package study.querydsl.repository.support;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * 크기 제한(LRU)과 TTL을 가진 간단한 메모리 캐시
+ *
+ * weigher를 지정하면 항목 수 대신 항목 무게(ex. 결과 row 수)의 합으로 크기를 제한한다.
+ * 값을 계산하는 동안 invalidate가 일어나면 계산된 값은 저장하지 않는다.
+ * (무효화 이전 상태로 계산된 값이 다시 캐시되는 것을 막기 위해 세대 번호를 비교한다)
+ */
+public class TtlCache<K, V> {
+
+	private final long ttlNanos;
+	private final long maxWeight;
+	private final ToLongFunction<? super V> weigher;
+	private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	private long generation;
+	private long weight;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	public TtlCache(Duration ttl, int maxSize) {
+		this(ttl, maxSize, value -> 1);
+	}
+
+	public TtlCache(Duration ttl, long maxWeight, ToLongFunction<? super V> weigher) {
+		this.ttlNanos = ttl.toNanos();
+		this.maxWeight = maxWeight;
+		this.weigher = weigher;
+	}
+
+	public V get(K key, Supplier<V> loader) {
+		return get(key, ttlNanos, loader);
+	}
+
+	/**
+	 * @param ttl 이 항목에만 적용할 TTL
+	 */
+	public V get(K key, Duration ttl, Supplier<V> loader) {
+		return get(key, ttl.toNanos(), loader);
+	}
+
+	private V get(K key, long ttlNanos, Supplier<V> loader) {
+		long loadGeneration;
+		synchronized (this) {
+			Entry<V> entry = entries.get(key);
+			if (entry != null && !entry.isExpired(System.nanoTime())) {
+				hits.incrementAndGet();
+				return entry.value;
+			}
+			if (entry != null) {
+				remove(key);
+				evictions.incrementAndGet();
+			}
+			loadGeneration = generation;
+		}
+		misses.incrementAndGet();
+		V value = loader.get();
+		synchronized (this) {
+			if (value != null && loadGeneration == generation) {
+				Entry<V> entry = new Entry<>(value, System.nanoTime() + ttlNanos, weigher.applyAsLong(value));
+				Entry<V> previous = entries.put(key, entry);
+				weight += entry.weight - (previous != null ? previous.weight : 0);
+				evictOverflow();
+			}
+		}
+		return value;
+	}
+
+	public synchronized boolean contains(K key) {
+		Entry<V> entry = entries.get(key);
+		return entry != null && !entry.isExpired(System.nanoTime());
+	}
+
+	public synchronized void invalidateAll() {
+		generation++;
+		entries.clear();
+		weight = 0;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized CacheStats stats() {
+		return new CacheStats(hits.get(), misses.get(), evictions.get(), entries.size(), weight);
+	}
+
+	private void remove(K key) {
+		Entry<V> removed = entries.remove(key);
+		if (removed != null) {
+			weight -= removed.weight;
+		}
+	}
+
+	private void evictOverflow() {
+		Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+		while (weight > maxWeight && iterator.hasNext()) {
+			weight -= iterator.next().getValue().weight;
+			iterator.remove();
+			evictions.incrementAndGet();
+		}
+	}
+
+	private static class Entry<V> {
+		private final V value;
+		private final long expiresAt;
+		private final long weight;
+
+		Entry(V value, long expiresAt, long weight) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+			this.weight = weight;
+		}
+
+		boolean isExpired(long now) {
+			return now - expiresAt >= 0;
+		}
+	}
+}
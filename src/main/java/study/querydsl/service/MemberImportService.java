@@ -0,0 +1,146 @@
+package study.querydsl.service;
+
+import static querydsl.study.querydsl.entity.QMember.member;
+import static querydsl.study.querydsl.entity.QTeam.team;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import study.querydsl.dto.MemberImportResult;
+import study.querydsl.dto.MemberImportRow;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+/**
+ * 회원 대량 import
+ *
+ * - chunkSize 건마다 트랜잭션을 나눠서 커밋한다.
+ * - batchSize 건마다 flush해서 insert/update가 JDBC batch로 나가게 하고(order_inserts), chunk가 끝나면 clear한다.
+ * - 팀 이름은 시작할 때 한 번 읽어 둔 name -> id 맵으로 찾고, 없는 팀은 만든다.
+ *   chunk에서 만든 팀은 그 chunk가 커밋된 뒤에 맵에 추가한다. (롤백되면 없는 팀의 id가 남지 않도록)
+ * - 이미 있는 username은 나이와 팀을 갱신한다. (upsert)
+ */
+@Service
+public class MemberImportService {
+
+	private final EntityManager em;
+	private final JPAQueryFactory queryFactory;
+	private final TransactionTemplate transactionTemplate;
+	private final int chunkSize;
+	private final int batchSize;
+
+	public MemberImportService(EntityManager em, JPAQueryFactory queryFactory, PlatformTransactionManager transactionManager,
+			@Value("${member.import.chunk-size:1000}") int chunkSize,
+			@Value("${spring.jpa.properties.hibernate.jdbc.batch_size:100}") int batchSize) {
+		this.em = em;
+		this.queryFactory = queryFactory;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.chunkSize = chunkSize;
+		this.batchSize = batchSize;
+	}
+
+	public MemberImportResult importMembers(Iterator<MemberImportRow> rows) {
+		long start = System.currentTimeMillis();
+		Map<String, Long> teamIds = transactionTemplate.execute(status -> loadTeamIds());
+		ImportCounts counts = new ImportCounts();
+
+		List<MemberImportRow> chunk = new ArrayList<>(chunkSize);
+		while (rows.hasNext()) {
+			chunk.add(rows.next());
+			if (chunk.size() == chunkSize || !rows.hasNext()) {
+				List<MemberImportRow> current = chunk;
+				Map<String, Long> createdTeamIds = new HashMap<>();
+				ImportCounts chunkCounts = new ImportCounts();
+				transactionTemplate.executeWithoutResult(status -> importChunk(current, teamIds, createdTeamIds, chunkCounts));
+				teamIds.putAll(createdTeamIds);
+				counts.add(chunkCounts);
+				chunk = new ArrayList<>(chunkSize);
+			}
+		}
+		return new MemberImportResult(counts.rows, counts.inserted, counts.updated, counts.teamsCreated,
+				System.currentTimeMillis() - start);
+	}
+
+	private Map<String, Long> loadTeamIds() {
+		Map<String, Long> teamIds = new HashMap<>();
+		for (Tuple tuple : queryFactory.select(team.name, team.id).from(team).orderBy(team.id.asc()).fetch()) {
+			teamIds.putIfAbsent(tuple.get(team.name), tuple.get(team.id));
+		}
+		return teamIds;
+	}
+
+	private void importChunk(List<MemberImportRow> chunk, Map<String, Long> teamIds, Map<String, Long> createdTeamIds,
+			ImportCounts counts) {
+		List<String> usernames = chunk.stream().map(MemberImportRow::getUsername).distinct().collect(Collectors.toList());
+		Map<String, Member> existing = new HashMap<>();
+		for (Member found : queryFactory.selectFrom(member).where(member.username.in(usernames)).fetch()) {
+			existing.putIfAbsent(found.getUsername(), found);
+		}
+
+		int pending = 0;
+		for (MemberImportRow row : chunk) {
+			Team rowTeam = null;
+			if (row.getTeamName() != null) {
+				Long teamId = teamIds.getOrDefault(row.getTeamName(), createdTeamIds.get(row.getTeamName()));
+				if (teamId == null) {
+					Team created = new Team(row.getTeamName());
+					em.persist(created);
+					teamId = created.getId();
+					createdTeamIds.put(row.getTeamName(), teamId);
+					counts.teamsCreated++;
+				}
+				// 팀을 조회하지 않고 프록시만 사용한다.
+				rowTeam = em.getReference(Team.class, teamId);
+			}
+
+			Member target = existing.get(row.getUsername());
+			if (target == null) {
+				target = new Member(row.getUsername(), row.getAge());
+				// changeTeam은 팀 프록시를 초기화하므로(Team.addMember) 연관관계의 주인 쪽만 설정한다.
+				target.setTeam(rowTeam);
+				em.persist(target);
+				existing.put(row.getUsername(), target);
+				counts.inserted++;
+			} else {
+				target.setAge(row.getAge());
+				target.setTeam(rowTeam);
+				counts.updated++;
+			}
+			counts.rows++;
+
+			if (++pending % batchSize == 0) {
+				em.flush();
+			}
+		}
+		em.flush();
+		em.clear();
+	}
+
+	private static class ImportCounts {
+		private long rows;
+		private long inserted;
+		private long updated;
+		private long teamsCreated;
+
+		void add(ImportCounts chunk) {
+			rows += chunk.rows;
+			inserted += chunk.inserted;
+			updated += chunk.updated;
+			teamsCreated += chunk.teamsCreated;
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package study.querydsl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+import static querydsl.study.querydsl.entity.QMember.member;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.BulkExecutionException;
+import study.querydsl.repository.support.BulkOptions;
+import study.querydsl.repository.support.BulkProgress;
+import study.querydsl.repository.support.ChunkedBulkExecutor;
+
+public class ChunkedBulkExecutorTest extends CommittedDataTest {
+
+	@Autowired
+	ChunkedBulkExecutor bulkExecutor;
+
+	@Override
+	protected void fixture() {
+		Team teamA = new Team("오");
+		em.persist(teamA);
+		em.persist(new Member("여몽", 40, teamA));
+		em.persist(new Member("육손", 20, teamA));
+		em.persist(new Member("장합", 42));
+		em.persist(new Member("학소", 22));
+		em.persist(new Member("재야장수", 30));
+	}
+
+	@Test
+	public void chunkedUpdate() {
+		List<BulkProgress> progress = new ArrayList<>();
+		BulkProgress result = bulkExecutor.update(member, member.id, null,
+				clause -> clause.set(member.age, member.age.add(5)),
+				BulkOptions.chunkSize(2).onProgress(progress::add));
+
+		assertThat(result.getChunks()).isEqualTo(3);
+		assertThat(result.getAffectedRows()).isEqualTo(5);
+		assertThat(progress).extracting("affectedRows").containsExactly(2L, 4L, 5L);
+		assertThat(queryFactory.select(member.age).from(member).fetch()).containsExactlyInAnyOrder(45, 25, 47, 27, 35);
+	}
+
+	@Test
+	public void chunkedDeleteWithCondition() {
+		BulkProgress result = bulkExecutor.delete(member, member.id, member.age.gt(30), BulkOptions.chunkSize(1));
+
+		assertThat(result.getAffectedRows()).isEqualTo(2);
+		assertThat(queryFactory.select(member.username).from(member).fetch()).containsExactlyInAnyOrder("육손", "학소", "재야장수");
+	}
+
+	@Test
+	public void resumeAfterFailure() {
+		// 두 번째 chunk가 커밋된 뒤 실패
+		BulkExecutionException failure = catchThrowableOfType(() -> bulkExecutor.update(member, member.id, null,
+				clause -> clause.set(member.age, member.age.add(5)),
+				BulkOptions.chunkSize(2).onProgress(progress -> {
+					if (progress.getChunks() == 2) {
+						throw new IllegalStateException("중단");
+					}
+				})), BulkExecutionException.class);
+		assertThat(failure.getProgress().getAffectedRows()).isEqualTo(4);
+
+		BulkProgress resumed = bulkExecutor.update(member, member.id, null,
+				clause -> clause.set(member.age, member.age.add(5)),
+				BulkOptions.chunkSize(2).resumeAfter(failure.getLastCommittedId()));
+
+		// 모든 row가 정확히 한 번씩 처리된다.
+		assertThat(resumed.getAffectedRows()).isEqualTo(1);
+		assertThat(queryFactory.select(member.age).from(member).fetch()).containsExactlyInAnyOrder(45, 25, 47, 27, 35);
+	}
+
+	@Test
+	public void detachOnlyAffectedEntities() {
+		tx.executeWithoutResult(status -> {
+			Member lvMeng = queryFactory.selectFrom(member).where(member.username.eq("여몽")).fetchOne();
+			// 여몽과 학소 사이의 id지만 조건에 맞지 않는 회원
+			Member luXun = queryFactory.selectFrom(member).where(member.username.eq("육손")).fetchOne();
+			Team team = lvMeng.getTeam();
+			team.getName();
+
+			bulkExecutor.update(member, member.id, member.username.in("여몽", "학소"),
+					clause -> clause.set(member.age, 50), BulkOptions.chunkSize(10));
+
+			assertThat(em.contains(lvMeng)).isFalse();
+			assertThat(em.contains(luXun)).isTrue();
+			assertThat(em.contains(team)).isTrue();
+			assertThat(queryFactory.selectFrom(member).where(member.username.eq("여몽")).fetchOne().getAge()).isEqualTo(50);
+		});
+	}
+}
@@ -0,0 +1,46 @@
+package study.querydsl;
+
+import static querydsl.study.querydsl.entity.QMember.member;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+/**
+ * 커밋 이후의 동작을 확인하는 테스트
+ * fixture()의 데이터를 커밋하고, 테스트가 끝나면 Member와 Team을 모두 지운다.
+ */
+@SpringBootTest
+public abstract class CommittedDataTest {
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	JPAQueryFactory queryFactory;
+
+	TransactionTemplate tx;
+
+	@BeforeEach
+	public void commitFixture(@Autowired PlatformTransactionManager transactionManager) {
+		tx = new TransactionTemplate(transactionManager);
+		tx.executeWithoutResult(status -> fixture());
+	}
+
+	@AfterEach
+	public void deleteAll() {
+		tx.executeWithoutResult(status -> {
+			queryFactory.delete(member).execute();
+			em.createQuery("delete from Team").executeUpdate();
+		});
+	}
+
+	protected abstract void fixture();
+}
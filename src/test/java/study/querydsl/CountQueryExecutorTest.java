@@ -0,0 +1,237 @@
+package study.querydsl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static querydsl.study.querydsl.entity.QMember.member;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.repository.support.PageableExecutionUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.metrics.SqlRecording;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.support.CountCache;
+import study.querydsl.repository.support.CountQueryExecutor;
+import study.querydsl.repository.support.PendingCount;
+
+public class CountQueryExecutorTest extends CommittedDataTest {
+
+	@Autowired
+	MemberRepository memberRepository;
+
+	@Autowired
+	CountCache countCache;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	// 동시 실행 모드
+	CountQueryExecutor concurrent;
+
+	@Override
+	protected void fixture() {
+		Team teamA = new Team("오");
+		Team teamB = new Team("위");
+		em.persist(teamA);
+		em.persist(teamB);
+		em.persist(new Member("여몽", 40, teamA));
+		em.persist(new Member("육손", 20, teamA));
+		em.persist(new Member("장합", 42, teamB));
+		em.persist(new Member("학소", 22, teamB));
+	}
+
+	@BeforeEach
+	public void before() {
+		concurrent = new CountQueryExecutor(countCache, em, transactionManager, true, 2, 4);
+	}
+
+	@AfterEach
+	public void after() {
+		concurrent.shutdown();
+	}
+
+	@Test
+	public void countCache() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setTeamName("위");
+		PageRequest pageable = PageRequest.of(0, 1);
+
+		long misses = countCache.stats().getMisses();
+		assertThat(memberRepository.searchPageComplex(condition, pageable).getTotalElements()).isEqualTo(2);
+		assertThat(memberRepository.searchPageComplex(condition, PageRequest.of(1, 1)).getTotalElements()).isEqualTo(2);
+		assertThat(countCache.stats().getMisses()).isEqualTo(misses + 1);
+
+		// 회원이 추가되면 캐시된 count는 무효화된다.
+		tx.executeWithoutResult(status -> em.persist(new Member("서황", 45, findTeam("위"))));
+		assertThat(memberRepository.searchPageComplex(condition, pageable).getTotalElements()).isEqualTo(3);
+	}
+
+	@Test
+	public void invalidateOncePerTransaction() {
+		String key = "CountQueryExecutorTest.invalidateOnce";
+		tx.executeWithoutResult(status -> {
+			Team teamB = findTeam("위");
+			em.persist(new Member("서황", 45, teamB));
+			int synchronizations = TransactionSynchronizationManager.getSynchronizations().size();
+			// 같은 트랜잭션의 다음 변경은 트랜잭션이 끝날 때 비우는 일을 다시 등록하지 않는다.
+			em.persist(new Member("조인", 41, teamB));
+			assertThat(TransactionSynchronizationManager.getSynchronizations()).hasSize(synchronizations);
+
+			assertThat(countCache.get(key, () -> teamMembers("위").fetchCount())).isEqualTo(4);
+		});
+		// 트랜잭션 안에서 센 total은 트랜잭션이 끝나면 버린다.
+		assertThat(countCache.contains(key)).isFalse();
+	}
+
+	@Test
+	public void concurrentCount() {
+		String key = "CountQueryExecutorTest.concurrentCount";
+		JPAQuery<Member> query = teamMembers("위");
+		// 풀 스레드에서 실행된 count도 호출 스레드의 기록에 남는다.
+		try (SqlRecording recording = SqlRecording.start();
+				PendingCount total = concurrent.prepare(key, query)) {
+			List<Member> content = query.fetch();
+			assertThat(total.getAsLong()).isEqualTo(content.size()).isEqualTo(2);
+			assertThat(recording.getShapes().keySet()).anyMatch(sql -> sql.contains("count("));
+		}
+		assertThat(countCache.contains(key)).isTrue();
+
+		// 첫 페이지가 다 차지 않으면 count는 쓰이지 않고 close에서 취소된다.
+		String unusedKey = "CountQueryExecutorTest.unused";
+		try (PendingCount total = concurrent.prepare(unusedKey, teamMembers("오"))) {
+			Page<Member> page = PageableExecutionUtils.getPage(teamMembers("오").fetch(), PageRequest.of(0, 10), total);
+			assertThat(page.getTotalElements()).isEqualTo(2);
+		}
+		assertThat(countCache.contains(unusedKey)).isFalse();
+	}
+
+	@Test
+	public void closeWhileCountIdle() throws InterruptedException {
+		CountDownLatch executed = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		JPAQuery<Member> query = new IdleAfterCountQuery<>(em, teamMembers("위").getMetadata(), executed, release);
+
+		PendingCount total = concurrent.prepare("CountQueryExecutorTest.idle", query);
+		try {
+			// 풀 스레드는 count 쿼리를 끝냈지만 아직 세션을 잡고 있다.
+			assertThat(executed.await(5, TimeUnit.SECONDS)).isTrue();
+			assertThatCode(total::close).doesNotThrowAnyException();
+			assertThat(total.isCancelled()).isTrue();
+		} finally {
+			release.countDown();
+		}
+	}
+
+	@Test
+	public void closeWhileCountInFlight() throws InterruptedException {
+		tx.executeWithoutResult(status -> em.createNativeQuery(
+				"create alias if not exists BLOCK_COUNT for \"" + getClass().getName() + ".blockCount\"").executeUpdate());
+		countInFlight = new CountDownLatch(1);
+		countRelease = new CountDownLatch(1);
+		JPAQuery<Member> query = teamMembers("위")
+				.where(Expressions.numberTemplate(Integer.class, "function('BLOCK_COUNT', {0})", member.age).eq(0));
+
+		PendingCount total = concurrent.prepare("CountQueryExecutorTest.inFlight", query);
+		try {
+			assertThat(countInFlight.await(5, TimeUnit.SECONDS)).isTrue();
+			assertThatCode(total::close).doesNotThrowAnyException();
+			assertThat(total.isCancelled()).isTrue();
+		} finally {
+			countRelease.countDown();
+		}
+	}
+
+	private static volatile CountDownLatch countInFlight;
+	private static volatile CountDownLatch countRelease;
+
+	// count 쿼리가 실행되는 동안 호출되는 H2 함수
+	public static int blockCount(int age) throws InterruptedException {
+		countInFlight.countDown();
+		countRelease.await(5, TimeUnit.SECONDS);
+		return 0;
+	}
+
+	// count 쿼리를 실행한 뒤 세션을 잡은 채로 기다린다.
+	static class IdleAfterCountQuery<T> extends JPAQuery<T> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final CountDownLatch executed;
+		private final CountDownLatch release;
+
+		IdleAfterCountQuery(EntityManager em, QueryMetadata metadata, CountDownLatch executed, CountDownLatch release) {
+			super(em, metadata);
+			this.executed = executed;
+			this.release = release;
+		}
+
+		@Override
+		public long fetchCount() {
+			long count = super.fetchCount();
+			executed.countDown();
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return count;
+		}
+
+		@Override
+		public IdleAfterCountQuery<T> clone(EntityManager entityManager, JPQLTemplates templates) {
+			return new IdleAfterCountQuery<>(entityManager, getMetadata().clone(), executed, release);
+		}
+	}
+
+	@Test
+	public void readWriteTransactionFallback() {
+		String key = "CountQueryExecutorTest.readWrite";
+		tx.executeWithoutResult(status -> {
+			em.persist(new Member("서황", 45, findTeam("위")));
+			JPAQuery<Member> query = teamMembers("위");
+			// 커밋하지 않은 회원도 세도록 호출 스레드에서 같은 트랜잭션으로 센다.
+			try (SqlRecording recording = SqlRecording.start();
+					PendingCount total = concurrent.prepare(key, query)) {
+				List<Member> content = query.fetch();
+				assertThat(total.getAsLong()).isEqualTo(content.size()).isEqualTo(3);
+				assertThat(recording.getShapes().keySet()).anyMatch(sql -> sql.contains("count("));
+			}
+			status.setRollbackOnly();
+		});
+		assertThat(countCache.contains(key)).isFalse();
+
+		try (PendingCount total = concurrent.prepare(key, teamMembers("위"))) {
+			assertThat(total.getAsLong()).isEqualTo(2);
+		}
+	}
+
+	private JPAQuery<Member> teamMembers(String teamName) {
+		return queryFactory.selectFrom(member).where(member.team.name.eq(teamName));
+	}
+
+	private Team findTeam(String name) {
+		return em.createQuery("select t from Team t where t.name = :name", Team.class)
+				.setParameter("name", name)
+				.getSingleResult();
+	}
+}
@@ -0,0 +1,65 @@
+package study.querydsl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import study.querydsl.controller.MemberExportWriter;
+import study.querydsl.controller.MemberFileFormat;
+import study.querydsl.dto.MemberTeamDto;
+
+public class MemberExportWriterTest {
+
+	ObjectMapper objectMapper = new ObjectMapper();
+
+	@Test
+	public void csv() {
+		String csv = export(MemberFileFormat.CSV,
+				new MemberTeamDto(1L, "여몽", 40, 10L, "오"),
+				new MemberTeamDto(2L, "장,합", 42, 20L, "위 \"魏\""),
+				new MemberTeamDto(3L, "학\n소", 22, null, null));
+
+		assertThat(csv).isEqualTo("memberId,username,age,teamId,teamName\n"
+				+ "1,여몽,40,10,오\n"
+				// 쉼표, 따옴표, 줄바꿈이 있는 값은 따옴표로 감싸고 따옴표는 두 번 쓴다.
+				+ "2,\"장,합\",42,20,\"위 \"\"魏\"\"\"\n"
+				+ "3,\"학\n소\",22,,\n");
+	}
+
+	@Test
+	public void ndjson() throws Exception {
+		String ndjson = export(MemberFileFormat.NDJSON,
+				new MemberTeamDto(1L, "장,합", 42, 20L, "위"),
+				new MemberTeamDto(2L, "학\n소", 22, null, null));
+
+		// 헤더 없이 한 줄에 하나씩 쓴다.
+		String[] lines = ndjson.split("\n", -1);
+		assertThat(lines).hasSize(3);
+		assertThat(lines[2]).isEmpty();
+
+		JsonNode first = objectMapper.readTree(lines[0]);
+		assertThat(first.get("memberId").asLong()).isEqualTo(1);
+		assertThat(first.get("username").asText()).isEqualTo("장,합");
+		assertThat(first.get("teamName").asText()).isEqualTo("위");
+
+		JsonNode second = objectMapper.readTree(lines[1]);
+		assertThat(second.get("username").asText()).isEqualTo("학\n소");
+		assertThat(second.get("teamId").isNull()).isTrue();
+		assertThat(second.get("teamName").isNull()).isTrue();
+	}
+
+	private String export(MemberFileFormat format, MemberTeamDto... rows) {
+		StringWriter out = new StringWriter();
+		MemberExportWriter writer = new MemberExportWriter(format, out, objectMapper);
+		writer.writeHeader();
+		for (MemberTeamDto row : rows) {
+			writer.write(row);
+		}
+		return out.toString();
+	}
+}
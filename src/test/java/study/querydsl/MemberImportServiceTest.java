@@ -0,0 +1,94 @@
+package study.querydsl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import study.querydsl.controller.MemberFileFormat;
+import study.querydsl.controller.MemberImportReader;
+import study.querydsl.dto.MemberImportResult;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.service.MemberImportService;
+
+@SpringBootTest
+@Transactional
+public class MemberImportServiceTest {
+
+	@Autowired
+	EntityManager em;
+	
+	@Autowired
+	MemberImportService memberImportService;
+	
+	@Autowired
+	MemberRepository memberRepository;
+	
+	@Autowired
+	ObjectMapper objectMapper;
+	
+	@BeforeEach
+	public void before() {
+		Team teamA = new Team("오");
+		em.persist(teamA);
+		em.persist(new Member("여몽", 40, teamA));
+	}
+	
+	@Test
+	public void importCsv() {
+		String csv = "username,age,teamName\n"
+				+ "여몽,41,오\n"
+				+ "육손,20,오\n"
+				+ "\"장,합\",42,위\n";
+		
+		MemberImportResult result = memberImportService.importMembers(reader(MemberFileFormat.CSV, csv));
+		
+		assertThat(result.getRows()).isEqualTo(3);
+		assertThat(result.getInserted()).isEqualTo(2);
+		assertThat(result.getUpdated()).isEqualTo(1);
+		assertThat(result.getTeamsCreated()).isEqualTo(1);
+		
+		List<Member> updated = memberRepository.findByUsername("여몽");
+		assertThat(updated).extracting("age").containsExactly(41);
+		assertThat(memberRepository.findByUsername("장,합").get(0).getTeam().getName()).isEqualTo("위");
+	}
+	
+	@Test
+	public void headerOnlyWhenWholeLineMatches() {
+		String csv = "usernameless,30,오\n"
+				+ "육손,20,오\n";
+		
+		MemberImportResult result = memberImportService.importMembers(reader(MemberFileFormat.CSV, csv));
+		
+		assertThat(result.getInserted()).isEqualTo(2);
+		assertThat(memberRepository.findByUsername("usernameless")).extracting("age").containsExactly(30);
+	}
+	
+	@Test
+	public void importNdjson() {
+		String ndjson = "{\"username\":\"육손\",\"age\":20,\"teamName\":\"오\"}\n"
+				+ "{\"username\":\"학소\",\"age\":22}\n";
+		
+		MemberImportResult result = memberImportService.importMembers(reader(MemberFileFormat.NDJSON, ndjson));
+		
+		assertThat(result.getInserted()).isEqualTo(2);
+		assertThat(memberRepository.findByUsername("학소").get(0).getTeam()).isNull();
+	}
+	
+	private MemberImportReader reader(MemberFileFormat format, String body) {
+		return new MemberImportReader(format, new BufferedReader(new StringReader(body)), objectMapper);
+	}
+}
@@ -1,7 +1,11 @@
 package study.querydsl;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static querydsl.study.querydsl.entity.QMember.member;
+import static querydsl.study.querydsl.entity.QTeam.team;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.persistence.EntityManager;
@@ -12,11 +16,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
+import study.querydsl.metrics.SqlRecording;
 import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.support.ColumnarResult;
+import study.querydsl.repository.support.IdBatchLoader;
 
 @SpringBootTest
 @Transactional
@@ -28,6 +37,9 @@ public class MemberJpaRepositoryTest {
 	@Autowired
 	MemberJpaRepository memberJpaRepository;
 	
+	@Autowired
+	JPAQueryFactory queryFactory;
+	
 	@BeforeEach
 	public void before() {
 		Team teamA = new Team("오");
@@ -78,4 +90,76 @@ public class MemberJpaRepositoryTest {
 		List<MemberTeamDto> result2 = memberJpaRepository.search(condition);
 		assertThat(result2).extracting("username").containsExactly("학소");
 	}
+	
+	@Test
+	public void searchQueryCacheTest() {
+		// 같은 shape(teamName, ageGoe)이면 캐시된 JPQL에 값만 다르게 바인딩된다.
+		MemberSearchCondition condition1 = new MemberSearchCondition();
+		condition1.setTeamName("오");
+		condition1.setAgeGoe(30);
+		
+		MemberSearchCondition condition2 = new MemberSearchCondition();
+		condition2.setTeamName("위");
+		condition2.setAgeGoe(20);
+		
+		assertThat(memberJpaRepository.search(condition1)).extracting("username").containsExactly("여몽");
+		assertThat(memberJpaRepository.search(condition2)).extracting("username").containsExactlyInAnyOrder("장합", "학소");
+		assertThat(memberJpaRepository.searchByBuilder(condition2)).extracting("teamName").containsOnly("위");
+	}
+	
+	@Test
+	public void searchStreamTest() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setTeamName("오");
+		
+		List<MemberTeamDto> result = new ArrayList<>();
+		memberJpaRepository.searchStream(condition, 1, result::add);
+		
+		assertThat(result).extracting("username").containsExactly("여몽", "육손");
+	}
+	
+	@Test
+	public void findAllByIdsTest() {
+		em.flush();
+		List<Long> ids = new ArrayList<>();
+		memberJpaRepository.findAll().forEach(m -> ids.add(m.getId()));
+		ids.sort(null);
+		em.clear();
+		
+		Member loaded = em.find(Member.class, ids.get(2));
+		List<Long> request = Arrays.asList(ids.get(3), ids.get(2), -1L, ids.get(0), ids.get(1), ids.get(3));
+		
+		// 영속성 컨텍스트에 있는 id는 빼고 나머지 세 건을 한 번에 조회
+		try (SqlRecording recording = SqlRecording.start()) {
+			List<Member> result = memberJpaRepository.findAllByIds(request);
+			
+			assertThat(result).extracting("username").containsExactly("학소", "장합", "여몽", "육손", "학소");
+			assertThat(result.get(1)).isSameAs(loaded);
+			assertThat(recording.getStatementCount()).isEqualTo(1);
+		}
+		
+		// 모두 영속성 컨텍스트에 있으면 쿼리 없음
+		try (SqlRecording recording = SqlRecording.start()) {
+			assertThat(memberJpaRepository.findAllByIds(ids)).hasSize(4);
+			assertThat(recording.getStatementCount()).isZero();
+		}
+		em.clear();
+		
+		// max-in-size(3 -> 2)씩 나눠서 조회
+		try (SqlRecording recording = SqlRecording.start()) {
+			assertThat(new IdBatchLoader(em, queryFactory, 3).findAllByIds(member, member.id, ids))
+					.extracting("username").containsExactly("여몽", "육손", "장합", "학소");
+			assertThat(recording.getStatementCount()).isEqualTo(2);
+		}
+	}
+	
+	@Test
+	public void searchColumnsTest() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setAgeGoe(22);
+		
+		ColumnarResult result = memberJpaRepository.searchColumns(condition);
+		assertThat(result.getInts(member.age)).containsExactlyInAnyOrder(40, 42, 22);
+		assertThat(result.getDictionary(team.name).counts()).containsExactlyInAnyOrder(1L, 2L);
+	}
 }
@@ -1,8 +1,12 @@
 package study.querydsl;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static querydsl.study.querydsl.entity.QMember.member;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 
 import javax.persistence.EntityManager;
@@ -13,13 +17,23 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import study.querydsl.dto.MemberCursorPage;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
+import study.querydsl.metrics.QueryMetricsRegistry;
+import study.querydsl.metrics.QueryStats;
+import study.querydsl.repository.InvalidCursorException;
 import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.MemberSearchResultCache;
+import study.querydsl.repository.support.CacheStats;
+import study.querydsl.repository.support.CountCache;
 
 @SpringBootTest
 @Transactional
@@ -31,6 +45,18 @@ public class MemberRepositoryTest {
 	@Autowired
 	MemberRepository memberRepository;
 	
+	@Autowired
+	CountCache countCache;
+	
+	@Autowired
+	QueryMetricsRegistry queryMetricsRegistry;
+	
+	@Autowired
+	MemberSearchResultCache searchResultCache;
+	
+	@Autowired
+	JPAQueryFactory queryFactory;
+	
 	@BeforeEach
 	public void before() {
 		Team teamA = new Team("오");
@@ -86,6 +112,180 @@ public class MemberRepositoryTest {
 		assertThat(result.getContent()).extracting("username").containsExactly("여몽", "육손", "장합");
 	}
 	
+	@Test
+	public void countInReadWriteTransaction() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setTeamName("위");
+		PageRequest pageable = PageRequest.of(0, 1);
+		
+		// 커밋하지 않은 회원이 있을 수 있는 트랜잭션이므로 count를 캐시하지 않는다. (캐시는 CountQueryExecutorTest)
+		CacheStats before = countCache.stats();
+		assertThat(memberRepository.searchPageComplex(condition, pageable).getTotalElements()).isEqualTo(2);
+		
+		Team teamB = memberRepository.findByUsername("장합").get(0).getTeam();
+		memberRepository.save(new Member("서황", 45, teamB));
+		Page<MemberTeamDto> page = memberRepository.searchPageComplex(condition, PageRequest.of(1, 1));
+		assertThat(page.getTotalElements()).isEqualTo(3);
+		assertThat(countCache.stats().getHits()).isEqualTo(before.getHits());
+		assertThat(countCache.stats().getMisses()).isEqualTo(before.getMisses());
+	}
+	
+	@Test
+	public void searchResultCacheTest() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setTeamName("위");
+		
+		CacheStats before = searchResultCache.stats();
+		List<MemberTeamDto> first = searchResultCache.list("v1", condition, () -> memberRepository.search(condition));
+		List<MemberTeamDto> second = searchResultCache.list("v1", condition, () -> memberRepository.search(condition));
+		assertThat(second).isSameAs(first);
+		assertThat(searchResultCache.stats().getHits()).isEqualTo(before.getHits() + 1);
+		assertThat(searchResultCache.stats().getMisses()).isEqualTo(before.getMisses() + 1);
+		
+		// pageable이 다르면 다른 키
+		Page<MemberTeamDto> page0 = searchResultCache.page("v3", condition, PageRequest.of(0, 1), () -> memberRepository.searchPageComplex(condition, PageRequest.of(0, 1)));
+		Page<MemberTeamDto> page1 = searchResultCache.page("v3", condition, PageRequest.of(1, 1), () -> memberRepository.searchPageComplex(condition, PageRequest.of(1, 1)));
+		assertThat(page0.getContent()).isNotEqualTo(page1.getContent());
+		
+		// 회원이 추가되면(flush) 무효화된다.
+		Team teamB = memberRepository.findByUsername("장합").get(0).getTeam();
+		em.persist(new Member("서황", 45, teamB));
+		em.flush();
+		assertThat(searchResultCache.list("v1", condition, () -> memberRepository.search(condition))).hasSize(3);
+		
+		// 영속성 컨텍스트를 거치지 않는 벌크 연산도 무효화한다.
+		queryFactory.update(member).set(member.age, member.age.add(1)).execute();
+		assertThat(searchResultCache.list("v1", condition, () -> memberRepository.search(condition)))
+				.extracting("age").containsExactlyInAnyOrder(43, 23, 46);
+	}
+	
+	@Test
+	public void teamReferenceCacheTest() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setTeamName("위");
+		
+		// team join 없이 조회하고 teamName은 캐시에서 채운다.
+		List<MemberTeamDto> result = memberRepository.search(condition);
+		assertThat(result).extracting("username").containsExactlyInAnyOrder("장합", "학소");
+		assertThat(result).extracting("teamName").containsOnly("위");
+		
+		// 없는 팀 이름이면 빈 결과
+		condition.setTeamName("촉");
+		assertThat(memberRepository.search(condition)).isEmpty();
+		assertThat(memberRepository.searchPageComplex(condition, PageRequest.of(0, 10)).getTotalElements()).isZero();
+		
+		// 팀이 추가되면 캐시가 갱신된다.
+		Team teamC = new Team("촉");
+		em.persist(teamC);
+		em.persist(new Member("관우", 50, teamC));
+		assertThat(memberRepository.search(condition)).extracting("username").containsExactly("관우");
+		assertThat(memberRepository.searchPageSimple(condition, PageRequest.of(0, 10)).getContent())
+				.extracting("teamName").containsExactly("촉");
+	}
+	
+	@Test
+	public void queryMetricsTest() {
+		queryMetricsRegistry.reset();
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setAgeGoe(21);
+		memberRepository.search(condition);
+		memberRepository.searchPageComplex(condition, PageRequest.of(0, 2));
+		
+		List<QueryStats> stats = queryMetricsRegistry.snapshot();
+		assertThat(stats).extracting("repositoryMethod").containsOnly("MemberRepository.search", "MemberRepository.searchPageComplex");
+		// TeamReferenceCache를 다시 읽는 Team 조회도 호출한 리포지토리 메서드로 기록된다.
+		assertThat(stats).extracting("operation").contains("fetch", "fetchCount");
+		
+		QueryStats search = stats.stream()
+				.filter(s -> s.getRepositoryMethod().equals("MemberRepository.search"))
+				.filter(s -> s.getFingerprint().contains("from Member"))
+				.findFirst().get();
+		assertThat(search.getCount()).isEqualTo(1);
+		assertThat(search.getRows()).isEqualTo(3);
+		assertThat(search.getStatements()).isGreaterThanOrEqualTo(1); // before()에서 persist한 데이터의 auto flush 포함
+	}
+	
+	@Test
+	public void queryMetricsFetchResults() {
+		queryMetricsRegistry.reset();
+		// 전체 수가 0이어서 content 쿼리를 실행하지 않아도 content 쿼리로 기록한다.
+		queryFactory.selectFrom(member).where(member.age.gt(100)).fetchResults();
+		queryFactory.selectFrom(member).where(member.age.gt(30)).fetchResults();
+		
+		List<QueryStats> stats = queryMetricsRegistry.snapshot();
+		assertThat(stats).filteredOn(s -> s.getOperation().equals("fetchResults"))
+				.isNotEmpty()
+				.allMatch(s -> !s.getFingerprint().contains("count("));
+	}
+	
+	@Test
+	public void searchByCursorTest() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		PageRequest pageable = PageRequest.of(0, 3, Sort.by("age"));
+		
+		MemberCursorPage first = memberRepository.searchByCursor(condition, null, pageable);
+		assertThat(first.getContent()).extracting("username").containsExactly("육손", "학소", "여몽");
+		assertThat(first.isHasNext()).isTrue();
+		
+		MemberCursorPage second = memberRepository.searchByCursor(condition, first.getNextCursor(), pageable);
+		assertThat(second.getContent()).extracting("username").containsExactly("장합");
+		assertThat(second.isHasNext()).isFalse();
+		assertThat(second.getNextCursor()).isNull();
+		
+		// 같은 나이에서는 id로 이어간다.
+		em.persist(new Member("손환", 20));
+		PageRequest desc = PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "age"));
+		MemberCursorPage last = memberRepository.searchByCursor(condition, null, PageRequest.of(0, 1, Sort.by("age")));
+		MemberCursorPage sameAge = memberRepository.searchByCursor(condition, last.getNextCursor(), PageRequest.of(0, 1, Sort.by("age")));
+		assertThat(last.getContent()).extracting("username").containsExactly("육손");
+		assertThat(sameAge.getContent()).extracting("username").containsExactly("손환");
+		assertThat(memberRepository.searchByCursor(condition, null, desc).getContent()).extracting("username").containsExactly("장합", "여몽");
+	}
+	
+	@Test
+	public void searchByCursorWithNullUsername() {
+		em.persist(new Member(null, 30));
+		em.persist(new Member(null, 31));
+		MemberSearchCondition condition = new MemberSearchCondition();
+		
+		// null은 방향과 상관없이 마지막이고, null 사이는 id로 이어간다.
+		assertThat(walkByCursor(condition, Sort.by("username"))).extracting("username")
+				.containsExactly("여몽", "육손", "장합", "학소", null, null);
+		assertThat(walkByCursor(condition, Sort.by(Sort.Direction.DESC, "username"))).extracting("username")
+				.containsExactly("학소", "장합", "육손", "여몽", null, null);
+		assertThat(walkByCursor(condition, Sort.by("username"))).extracting("age").endsWith(30, 31);
+	}
+	
+	// 한 건씩 다음 커서로 끝까지 읽는다.
+	private List<MemberTeamDto> walkByCursor(MemberSearchCondition condition, Sort sort) {
+		List<MemberTeamDto> result = new ArrayList<>();
+		String cursor = null;
+		do {
+			MemberCursorPage page = memberRepository.searchByCursor(condition, cursor, PageRequest.of(0, 1, sort));
+			result.addAll(page.getContent());
+			cursor = page.getNextCursor();
+		} while (cursor != null);
+		return result;
+	}
+	
+	@Test
+	public void invalidCursorTest() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		PageRequest byAge = PageRequest.of(0, 1, Sort.by("age"));
+		String cursor = memberRepository.searchByCursor(condition, null, byAge).getNextCursor();
+		
+		assertThatThrownBy(() -> memberRepository.searchByCursor(condition, "잘못된 커서", byAge))
+				.isInstanceOf(InvalidCursorException.class);
+		assertThatThrownBy(() -> memberRepository.searchByCursor(condition, cursor, PageRequest.of(0, 1, Sort.by("username"))))
+				.isInstanceOf(InvalidCursorException.class);
+		assertThatThrownBy(() -> memberRepository.searchByCursor(condition, null, PageRequest.of(0, 1, Sort.by("team"))))
+				.isInstanceOf(InvalidCursorException.class);
+		// 나이 커서의 값이 숫자가 아님
+		String notNumber = Base64.getUrlEncoder().encodeToString("AGE:asc:1:x".getBytes(StandardCharsets.UTF_8));
+		assertThatThrownBy(() -> memberRepository.searchByCursor(condition, notNumber, byAge))
+				.isInstanceOf(InvalidCursorException.class);
+	}
+	
 	@Test
 	public void querydslPredicateExecutorTest() {
 		/*
@@ -0,0 +1,197 @@
+package study.querydsl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.metrics.SqlRecording;
+import study.querydsl.repository.MemberTestRepository;
+
+@SpringBootTest
+@Transactional
+public class MemberTestRepositoryTest {
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	MemberTestRepository memberTestRepository;
+
+	@BeforeEach
+	public void before() {
+		Team teamA = new Team("오");
+		Team teamB = new Team("위");
+		em.persist(teamA);
+		em.persist(teamB);
+
+		em.persist(new Member("여몽", 40, teamA));
+		em.persist(new Member("육손", 20, teamA));
+		em.persist(new Member("장합", 42, teamB));
+		em.persist(new Member("학소", 22, teamB));
+		em.persist(new Member("재야장수", 30));
+	}
+
+	@Test
+	public void derivedCountQuery() {
+		// 팀 조건이 없으면 team join 없이 센다. (팀이 없는 회원도 포함)
+		MemberSearchCondition condition = new MemberSearchCondition();
+		try (SqlRecording recording = SqlRecording.start()) {
+			Page<Member> all = memberTestRepository.applyPagination(condition, PageRequest.of(0, 2, Sort.by("age")));
+			assertThat(all.getContent()).extracting("username").containsExactly("육손", "학소");
+			assertThat(all.getTotalElements()).isEqualTo(5);
+			assertThat(countSql(recording)).doesNotContain("join").doesNotContain("order by");
+		}
+
+		// 팀 조건이 있으면 join을 남긴다.
+		condition.setTeamName("위");
+		try (SqlRecording recording = SqlRecording.start()) {
+			Page<Member> teamB = memberTestRepository.applyPagination(condition, PageRequest.of(0, 1));
+			assertThat(teamB.getTotalElements()).isEqualTo(2);
+			assertThat(countSql(recording)).contains("left outer join team");
+		}
+	}
+
+	@Test
+	public void derivedCountQueryWithFetchJoin() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setAgeGoe(21);
+
+		try (SqlRecording recording = SqlRecording.start()) {
+			Page<Member> result = memberTestRepository.applyPaginationFetchJoin(condition, PageRequest.of(0, 2, Sort.by("age")));
+			assertThat(result.getContent()).extracting("username").containsExactly("학소", "재야장수");
+			assertThat(result.getTotalElements()).isEqualTo(4);
+			assertThat(countSql(recording)).doesNotContain("join");
+		}
+
+		// 별칭 없는 fetch join
+		try (SqlRecording recording = SqlRecording.start()) {
+			Page<Member> result = memberTestRepository.applyPaginationTeamFetchJoin(condition, PageRequest.of(0, 2, Sort.by("age")));
+			assertThat(result.getContent()).extracting("username").containsExactly("학소", "재야장수");
+			assertThat(result.getContent().get(0).getTeam().getName()).isEqualTo("위");
+			assertThat(result.getTotalElements()).isEqualTo(4);
+			assertThat(countSql(recording)).doesNotContain("join");
+		}
+	}
+
+	@Test
+	public void fetchPlan() {
+		for (String fetchPlan : new String[] {"lean", "team", "teamGraph", "teamBatch", "full"}) {
+			em.flush();
+			em.clear();
+			
+			try (SqlRecording recording = SqlRecording.start()) {
+				List<Member> members = memberTestRepository.basicSelectFrom(fetchPlan);
+				assertThat(members).hasSize(5);
+				members.stream()
+						.filter(m -> m.getTeam() != null)
+						.forEach(m -> assertThat(m.getTeam().getName()).isNotNull());
+				
+				// lean: 회원 1번 + 팀마다 1번, teamBatch: 회원 1번 + 팀 1번, full: 회원+팀 1번 + 팀의 회원 목록 1번
+				int expected = fetchPlan.equals("lean") ? 3 : fetchPlan.equals("teamBatch") || fetchPlan.equals("full") ? 2 : 1;
+				assertThat(recording.getStatementCount()).as(fetchPlan).isEqualTo(expected);
+			}
+		}
+		
+		// full: 팀의 회원 목록까지 추가 SQL 없이
+		em.flush();
+		em.clear();
+		try (SqlRecording recording = SqlRecording.start()) {
+			List<Member> members = memberTestRepository.basicSelectFrom("full");
+			Member lvMeng = members.stream().filter(m -> m.getUsername().equals("여몽")).findFirst().get();
+			assertThat(lvMeng.getTeam().getMembers()).extracting("username").containsExactlyInAnyOrder("여몽", "육손");
+			assertThat(recording.getStatementCount()).isEqualTo(2);
+		}
+	}
+	
+	@Test
+	public void fetchPlanWithPaging() {
+		em.flush();
+		em.clear();
+		
+		try (SqlRecording recording = SqlRecording.start()) {
+			Page<Member> result = memberTestRepository.applyPagination(new MemberSearchCondition(), PageRequest.of(0, 3, Sort.by("age")), "teamBatch");
+			assertThat(result.getContent()).extracting("username").containsExactly("육손", "학소", "재야장수");
+			assertThat(result.getContent().get(0).getTeam().getName()).isEqualTo("오");
+			assertThat(result.getTotalElements()).isEqualTo(5);
+			// content + count + 팀 batch
+			assertThat(recording.getStatementCount()).isEqualTo(3);
+		}
+		
+		assertThatThrownBy(() -> memberTestRepository.basicSelectFrom("unknown"))
+				.isInstanceOf(InvalidDataAccessApiUsageException.class)
+				.hasCauseInstanceOf(IllegalArgumentException.class);
+		// 컬렉션 fetch join은 메모리 페이징이 되므로 받지 않는다.
+		assertThatThrownBy(() -> memberTestRepository.applyPagination(new MemberSearchCondition(), PageRequest.of(0, 3), "teamMembers"))
+				.isInstanceOf(InvalidDataAccessApiUsageException.class)
+				.hasCauseInstanceOf(IllegalArgumentException.class);
+	}
+	
+	@Test
+	public void nestedBatchWithLazyTeam() {
+		em.flush();
+		em.clear();
+		
+		// 팀은 fetch join하지 않았으므로 프록시다. 팀(프록시)과 팀의 회원 목록을 batch 한 번으로 채운다.
+		try (SqlRecording recording = SqlRecording.start()) {
+			List<Member> members = memberTestRepository.basicSelectFrom("teamMembersBatch");
+			assertThat(members).hasSize(5);
+			assertThat(recording.getStatementCount()).isEqualTo(2);
+			
+			Member lvMeng = members.stream().filter(m -> m.getUsername().equals("여몽")).findFirst().get();
+			assertThat(lvMeng.getTeam().getName()).isEqualTo("오");
+			assertThat(lvMeng.getTeam().getMembers()).extracting("username").containsExactlyInAnyOrder("여몽", "육손");
+			assertThat(recording.getStatementCount()).isEqualTo(2);
+		}
+	}
+	
+	@Test
+	public void readOnlyFetch() {
+		em.flush();
+		em.clear();
+		
+		Session session = em.unwrap(Session.class);
+		List<Member> result = memberTestRepository.basicSelectFromReadOnly("full");
+		assertThat(result).hasSize(5).allMatch(session::isReadOnly);
+		// fetch join, batch로 함께 로딩된 엔티티도 read-only
+		assertThat(result.get(0).getTeam().getMembers()).allMatch(session::isReadOnly);
+		assertThat(session.isReadOnly(result.get(0).getTeam())).isTrue();
+		
+		// 변경 감지 대상이 아니므로 flush해도 update가 나가지 않는다.
+		result.get(0).setUsername("수정");
+		try (SqlRecording recording = SqlRecording.start()) {
+			em.flush();
+			assertThat(recording.getStatementCount()).isZero();
+		}
+		em.clear();
+		
+		List<Member> managed = memberTestRepository.basicSelectFrom();
+		assertThat(managed).extracting("username").doesNotContain("수정");
+		assertThat(managed).noneMatch(session::isReadOnly);
+	}
+
+	private static String countSql(SqlRecording recording) {
+		List<String> counts = recording.getShapes().keySet().stream()
+				.filter(sql -> sql.contains("count("))
+				.collect(Collectors.toList());
+		assertThat(counts).hasSize(1);
+		return counts.get(0);
+	}
+}
@@ -1,10 +1,12 @@
 package study.querydsl;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static querydsl.study.querydsl.entity.QMember.member;
 import static querydsl.study.querydsl.entity.QTeam.team;
 
 import java.util.List;
+import java.util.stream.IntStream;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
@@ -30,9 +32,17 @@ import com.querydsl.jpa.impl.JPAQueryFactory;
 import querydsl.study.querydsl.dto.QMemberDto;
 import querydsl.study.querydsl.entity.QMember;
 import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.UserDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
+import study.querydsl.metrics.SqlBudget;
+import study.querydsl.metrics.SqlBudgetExceededException;
+import study.querydsl.metrics.SqlRecording;
+import study.querydsl.repository.support.ColumnarQuery;
+import study.querydsl.repository.support.ColumnarResult;
+import study.querydsl.repository.support.ColumnarResult.Dictionary;
+import study.querydsl.repository.support.FastProjections;
 
 @SpringBootTest
 @Transactional
@@ -255,6 +265,36 @@ class QuerydslBasicTest {
 		assertThat(teamB.get(member.age.avg())).isEqualTo(32);
 	}
 	
+	/**
+	 * aggregation, group을 컬럼 배열로 조회해서 계산
+	 */
+	@Test
+	public void columnarAggregation() {
+		ColumnarResult result = ColumnarQuery.from(queryFactory
+						.from(member)
+						.leftJoin(member.team, team))
+				.longs(member.id)
+				.ints(member.age)
+				.dictionary(team.name)
+				.fetch();
+		
+		int[] ages = result.getInts(member.age);
+		assertThat(result.size()).isEqualTo(4);
+		assertThat(result.getLongs(member.id)).doesNotHaveDuplicates();
+		assertThat(IntStream.of(ages).sum()).isEqualTo(124);
+		assertThat(IntStream.of(ages).max().getAsInt()).isEqualTo(42);
+		assertThat(IntStream.of(ages).min().getAsInt()).isEqualTo(20);
+		
+		Dictionary teams = result.getDictionary(team.name);
+		assertThat(teams.getValues()).containsExactlyInAnyOrder("오", "위");
+		long[] counts = teams.counts();
+		long[] sums = teams.sums(ages);
+		assertThat(sums[teams.codeOf("오")] / counts[teams.codeOf("오")]).isEqualTo(30);
+		assertThat(sums[teams.codeOf("위")] / counts[teams.codeOf("위")]).isEqualTo(32);
+		
+		assertThatThrownBy(() -> result.getInts(member.id)).isInstanceOf(IllegalArgumentException.class);
+	}
+	
 	/**
 	 * 오나라 장수
 	 */
@@ -439,6 +479,47 @@ class QuerydslBasicTest {
 		assertThat(loaded).as("페치 조인 적용").isTrue();
 	}
 	
+	@Test
+	public void sqlRecordingDetectsNPlusOne() {
+		em.flush();
+		em.clear();
+		
+		// 지연 로딩: 회원 조회 1번 + 팀마다 1번
+		try (SqlRecording recording = SqlRecording.start()) {
+			List<Member> members = queryFactory.selectFrom(member).fetch();
+			members.forEach(m -> m.getTeam().getName());
+			
+			assertThat(recording.getStatementCount()).isEqualTo(3);
+			assertThat(recording.getRepeatedShapes(2)).hasSize(1);
+			assertThat(new SqlBudget(10, 1, SqlBudget.Mode.WARN).violations(recording)).hasSize(1);
+		}
+		em.clear();
+		
+		// 페치 조인이면 한 번
+		try (SqlRecording recording = SqlRecording.start()) {
+			List<Member> members = queryFactory.selectFrom(member).join(member.team, team).fetchJoin().fetch();
+			members.forEach(m -> m.getTeam().getName());
+			
+			assertThat(recording.getStatementCount()).isEqualTo(1);
+			assertThat(recording.getMaxRepeats()).isEqualTo(1);
+		}
+	}
+	
+	@Test
+	public void sqlBudgetFailMode() {
+		em.flush();
+		em.clear();
+		
+		try (SqlRecording recording = SqlRecording.start(new SqlBudget(10, 1, SqlBudget.Mode.FAIL))) {
+			List<Member> members = queryFactory.selectFrom(member).fetch();
+			assertThatThrownBy(() -> members.forEach(m -> m.getTeam().getName()))
+					.isInstanceOf(SqlBudgetExceededException.class);
+			// 두 번째 팀 조회가 실행되기 전에 막힌다.
+			assertThat(recording.getRepeatedShapes(2)).hasSize(1);
+			assertThat(recording.getMaxRepeats()).isEqualTo(2);
+		}
+	}
+	
 	/**
 	 * 나이가 가장 많은 장수
 	 */
@@ -727,6 +808,54 @@ class QuerydslBasicTest {
 		}
 	}
 	
+	@Test
+	public void findDtoByFastProjections() {
+		//Projections.*와 같은 결과를 리플렉션 없이 만든다.
+		QMember memberSub = new QMember("memberSub");
+		
+		List<MemberDto> beans = queryFactory
+				.select(FastProjections.bean(MemberDto.class,
+						member.username, member.age))
+				.from(member)
+				.orderBy(member.username.asc())
+				.fetch();
+		List<MemberDto> expectedBeans = queryFactory
+				.select(Projections.bean(MemberDto.class,
+						member.username, member.age))
+				.from(member)
+				.orderBy(member.username.asc())
+				.fetch();
+		assertThat(beans).isEqualTo(expectedBeans);
+		
+		List<UserDto> fields = queryFactory
+				.select(FastProjections.fields(UserDto.class,
+						member.username.as("name"),
+						ExpressionUtils.as(JPAExpressions
+								.select(memberSub.age.max())
+								.from(memberSub), "age")
+				))
+				.from(member)
+				.fetch();
+		assertThat(fields).extracting("age").containsOnly(42);
+		assertThat(fields).extracting("name").containsExactlyInAnyOrder("여몽", "육손", "장합", "학소");
+		
+		List<MemberTeamDto> constructors = queryFactory
+				.select(FastProjections.constructor(MemberTeamDto.class,
+						member.id, member.username, member.age, team.id, team.name))
+				.from(member)
+				.leftJoin(member.team, team)
+				.orderBy(member.username.asc())
+				.fetch();
+		List<MemberTeamDto> expectedConstructors = queryFactory
+				.select(Projections.constructor(MemberTeamDto.class,
+						member.id, member.username, member.age, team.id, team.name))
+				.from(member)
+				.leftJoin(member.team, team)
+				.orderBy(member.username.asc())
+				.fetch();
+		assertThat(constructors).isEqualTo(expectedConstructors);
+	}
+	
 	@Test
 	public void dynamicQueryBooleanBuilder() {
 		String usernameParam = "여몽";
@@ -0,0 +1,123 @@
+package study.querydsl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import study.querydsl.datasource.ReplicaHealthChecker;
+import study.querydsl.datasource.ReplicaRoutingDataSource;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+
+/**
+ * H2 세 개로 확인한다.
+ * replica-1은 primary의 스키마만 복사하고 primary와 다른 데이터를 넣은 메모리 DB, replica-2는 존재하지 않는 DB(장애 replica 역할)
+ * 조회 결과가 어느 DB의 데이터인지로 라우팅을 확인한다.
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1",
+		"member.datasource.routing.enabled=true",
+		"member.datasource.routing.replica-urls=jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1,jdbc:h2:mem:routing-missing;IFEXISTS=TRUE",
+		"member.datasource.routing.lag-query=select 0",
+		"member.datasource.routing.max-lag=5s"
+})
+public class ReplicaRoutingTest {
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	MemberRepository memberRepository;
+
+	@Autowired
+	DataSource dataSource;
+	
+	ReplicaRoutingDataSource routingDataSource;
+
+	@Autowired
+	ReplicaHealthChecker healthChecker;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@BeforeEach
+	public void before() throws SQLException {
+		routingDataSource = dataSource.unwrap(ReplicaRoutingDataSource.class);
+
+		// 트랜잭션 밖이므로 primary에서 스키마를 읽는다.
+		JdbcTemplate replica = new JdbcTemplate(routingDataSource.getReplicas().get(0).getDataSource());
+		replica.execute("drop all objects");
+		new JdbcTemplate(dataSource).queryForList("script nodata", String.class).stream()
+				.filter(sql -> !sql.startsWith("--"))
+				.forEach(replica::execute);
+		// primary에는 없는 데이터
+		replica.update("insert into team (team_id, name) values (1, '촉')");
+		replica.update("insert into member (member_id, username, age, team_id) values (1, '장비', 48, 1)");
+	}
+
+	@AfterEach
+	public void after() {
+		healthChecker.checkAll();
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			em.createQuery("delete from Member").executeUpdate();
+			em.createQuery("delete from Team").executeUpdate();
+		});
+	}
+
+	@Test
+	public void routing() {
+		Map<String, Long> before = routingDataSource.getRoutedCounts();
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			Team team = new Team("촉");
+			em.persist(team);
+			em.persist(new Member("관우", 50, team));
+		});
+		Map<String, Long> afterWrite = routingDataSource.getRoutedCounts();
+		assertThat(afterWrite.get(ReplicaRoutingDataSource.PRIMARY)).isGreaterThan(before.get(ReplicaRoutingDataSource.PRIMARY));
+
+		// 읽기 전용 조회는 정상인 replica-1로 간다. (replica-2는 연결할 수 없어서 제외)
+		assertThat(routingDataSource.getReplicas()).extracting("healthy").containsExactly(true, false);
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setTeamName("촉");
+		assertThat(memberRepository.search(condition)).extracting("username").containsExactly("장비");
+		assertThat(memberRepository.search(condition)).extracting("username").containsExactly("장비");
+
+		Map<String, Long> afterRead = routingDataSource.getRoutedCounts();
+		assertThat(afterRead.get("replica-1")).isEqualTo(afterWrite.get("replica-1") + 2);
+		assertThat(afterRead.get("replica-2")).isEqualTo(afterWrite.get("replica-2"));
+		assertThat(afterRead.get(ReplicaRoutingDataSource.PRIMARY)).isEqualTo(afterWrite.get(ReplicaRoutingDataSource.PRIMARY));
+	}
+
+	@Test
+	public void lagFallbackToPrimary() {
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			Team team = new Team("촉");
+			em.persist(team);
+			em.persist(new Member("관우", 50, team));
+		});
+		routingDataSource.updateStatus("replica-1", true, Duration.ofSeconds(30));
+
+		Map<String, Long> before = routingDataSource.getRoutedCounts();
+		assertThat(memberRepository.search(new MemberSearchCondition())).extracting("username").containsExactly("관우");
+
+		Map<String, Long> after = routingDataSource.getRoutedCounts();
+		assertThat(after.get("replica-1")).isEqualTo(before.get("replica-1"));
+		assertThat(after.get(ReplicaRoutingDataSource.PRIMARY)).isEqualTo(before.get(ReplicaRoutingDataSource.PRIMARY) + 1);
+	}
+}
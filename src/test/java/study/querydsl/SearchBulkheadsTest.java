@@ -0,0 +1,53 @@
+package study.querydsl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import study.querydsl.controller.SearchBulkheads;
+import study.querydsl.controller.SearchBulkheads.Bulkhead;
+
+public class SearchBulkheadsTest {
+
+	SearchBulkheads bulkheads = new SearchBulkheads(1, 1, 1, 1);
+	CountDownLatch release = new CountDownLatch(1);
+
+	@AfterEach
+	public void after() {
+		release.countDown();
+		bulkheads.shutdown();
+	}
+
+	@Test
+	public void rejectWhenFull() throws Exception {
+		// 실행 중 1개 + 대기 1개로 SCAN 풀이 가득 찬다.
+		CompletableFuture<String> running = bulkheads.submit(Bulkhead.SCAN, this::slowSearch);
+		CompletableFuture<String> queued = bulkheads.submit(Bulkhead.SCAN, this::slowSearch);
+		assertThatThrownBy(() -> bulkheads.submit(Bulkhead.SCAN, this::slowSearch))
+				.isInstanceOf(RejectedExecutionException.class);
+		assertThat(bulkheads.stats().get("SCAN").getRejected()).isEqualTo(1);
+
+		// SCAN이 밀려 있어도 PAGE 검색은 바로 실행된다.
+		assertThat(bulkheads.submit(Bulkhead.PAGE, () -> "page").get(1, TimeUnit.SECONDS)).isEqualTo("page");
+
+		release.countDown();
+		assertThat(running.get(1, TimeUnit.SECONDS)).isEqualTo("scan");
+		assertThat(queued.get(1, TimeUnit.SECONDS)).isEqualTo("scan");
+	}
+
+	private String slowSearch() {
+		try {
+			release.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return "scan";
+	}
+}
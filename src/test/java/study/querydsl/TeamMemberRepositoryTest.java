@@ -0,0 +1,139 @@
+package study.querydsl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static querydsl.study.querydsl.entity.QMember.member;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.TeamMemberRepository;
+
+@SpringBootTest
+@Transactional
+public class TeamMemberRepositoryTest {
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	JPAQueryFactory queryFactory;
+
+	@Autowired
+	TeamMemberRepository teamMemberRepository;
+
+	Long teamAId;
+	Long teamBId;
+
+	@BeforeEach
+	public void before() {
+		Team teamA = new Team("오");
+		Team teamB = new Team("위");
+		em.persist(teamA);
+		em.persist(teamB);
+		em.persist(new Member("여몽", 40, teamA));
+		em.persist(new Member("육손", 20, teamA));
+		em.persist(new Member("장합", 42, teamB));
+		em.persist(new Member("학소", 22, teamB));
+		em.persist(new Member("서성", 35, teamA));
+		em.flush();
+		em.clear();
+		teamAId = teamA.getId();
+		teamBId = teamB.getId();
+	}
+
+	@Test
+	public void extraLazyMembers() {
+		Team teamA = em.find(Team.class, teamAId);
+		Member lvMeng = findMember("여몽");
+		Member zhangHe = findMember("장합");
+
+		// count, exists 쿼리로 처리하고 컬렉션은 읽지 않는다.
+		assertThat(teamA.getMembers().size()).isEqualTo(3);
+		assertThat(teamA.getMembers().contains(lvMeng)).isTrue();
+		assertThat(teamA.getMembers().contains(zhangHe)).isFalse();
+		assertThat(Hibernate.isInitialized(teamA.getMembers())).isFalse();
+	}
+
+	@Test
+	public void changeTeamWithoutLoadingMembers() {
+		Team teamA = em.find(Team.class, teamAId);
+		Member zhangHe = findMember("장합");
+		assertThat(Hibernate.isInitialized(zhangHe.getTeam())).isFalse();
+
+		zhangHe.changeTeam(teamA);
+
+		assertThat(Hibernate.isInitialized(teamA.getMembers())).isFalse();
+		assertThat(teamA.getMembers().size()).isEqualTo(4);
+		assertThat(teamMemberRepository.countMembers(teamBId)).isEqualTo(1);
+		assertThat(teamMemberRepository.containsMember(teamAId, zhangHe.getId())).isTrue();
+		assertThat(teamA.getMembers()).extracting("username").containsExactlyInAnyOrder("여몽", "육손", "서성", "장합");
+	}
+
+	@Test
+	public void changeTeamWithLoadedMembers() {
+		Team teamA = em.find(Team.class, teamAId);
+		Team teamB = em.find(Team.class, teamBId);
+		// hasSize는 size()라서 컬렉션을 읽지 않으므로 요소로 확인한다.
+		assertThat(teamA.getMembers()).extracting("username").containsExactlyInAnyOrder("여몽", "육손", "서성");
+		assertThat(teamB.getMembers()).extracting("username").containsExactlyInAnyOrder("장합", "학소");
+
+		findMember("장합").changeTeam(teamA);
+		assertThat(teamA.getMembers()).extracting("username").contains("장합");
+		assertThat(teamB.getMembers()).extracting("username").containsExactly("학소");
+
+		em.flush();
+		em.clear();
+
+		// 읽지 않은 팀 프록시
+		Member lvMeng = findMember("여몽");
+		Team teamBProxy = em.getReference(Team.class, teamBId);
+		lvMeng.changeTeam(teamBProxy);
+		assertThat(Hibernate.isInitialized(teamBProxy.getMembers())).isFalse();
+		assertThat(teamMemberRepository.countMembers(teamAId)).isEqualTo(3);
+		assertThat(teamBProxy.getMembers()).extracting("username").containsExactlyInAnyOrder("학소", "여몽");
+	}
+
+	@Test
+	public void changeTeamToDetachedTeam() {
+		Team teamA = em.find(Team.class, teamAId);
+		em.detach(teamA);
+
+		// 세션이 닫힌 팀의 읽지 않은 컬렉션은 건드리지 않는다.
+		Member zhangHe = findMember("장합");
+		zhangHe.changeTeam(teamA);
+		assertThat(zhangHe.getTeam()).isSameAs(teamA);
+		assertThat(Hibernate.isInitialized(teamA.getMembers())).isFalse();
+	}
+
+	@Test
+	public void findMembers() {
+		Page<Member> first = teamMemberRepository.findMembers(teamAId, PageRequest.of(0, 2));
+		assertThat(first.getContent()).extracting("username").containsExactly("여몽", "육손");
+		assertThat(first.getTotalElements()).isEqualTo(3);
+		assertThat(first.getTotalPages()).isEqualTo(2);
+
+		Page<Member> byAge = teamMemberRepository.findMembers(teamAId, PageRequest.of(1, 2, Sort.by(Sort.Direction.DESC, "age")));
+		assertThat(byAge.getContent()).extracting("username").containsExactly("육손");
+		assertThat(byAge.getTotalElements()).isEqualTo(3);
+
+		assertThat(teamMemberRepository.countMembers(teamBId)).isEqualTo(2);
+		assertThat(teamMemberRepository.containsMember(teamBId, findMember("여몽").getId())).isFalse();
+	}
+
+	private Member findMember(String username) {
+		return queryFactory.selectFrom(member).where(member.username.eq(username)).fetchOne();
+	}
+}
@@ -0,0 +1,156 @@
+package study.querydsl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static querydsl.study.querydsl.entity.QMember.member;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import study.querydsl.dto.TeamStatistics;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.metrics.SqlRecording;
+import study.querydsl.repository.TeamStatisticsStore;
+
+public class TeamStatisticsStoreTest extends CommittedDataTest {
+
+	@Autowired
+	TeamStatisticsStore store;
+
+	Long teamAId;
+	Long teamBId;
+
+	@Override
+	protected void fixture() {
+		Team teamA = new Team("오");
+		Team teamB = new Team("위");
+		em.persist(teamA);
+		em.persist(teamB);
+		em.persist(new Member("여몽", 40, teamA));
+		em.persist(new Member("육손", 20, teamA));
+		em.persist(new Member("장합", 42, teamB));
+		em.persist(new Member("학소", 22, teamB));
+		em.persist(new Member("재야장수", 30));
+		teamAId = teamA.getId();
+		teamBId = teamB.getId();
+	}
+
+	@Test
+	public void incrementalUpdate() {
+		assertStatistics(teamAId, 2, 60, 20, 40);
+		assertStatistics(teamBId, 2, 64, 22, 42);
+
+		tx.executeWithoutResult(status -> {
+			Team teamB = em.find(Team.class, teamBId);
+			findMember("여몽").changeTeam(teamB);
+			findMember("육손").setAge(25);
+			findMember("재야장수").changeTeam(teamB);
+			em.remove(findMember("학소"));
+		});
+
+		// 다시 집계하지 않고 변경분만 반영한다.
+		try (SqlRecording recording = SqlRecording.start()) {
+			assertStatistics(teamAId, 1, 25, 25, 25);
+			assertStatistics(teamBId, 3, 112, 30, 42);
+			assertThat(recording.getShapes().keySet()).noneMatch(sql -> sql.contains("from member"));
+		}
+		assertThat(store.getAll()).extracting("teamName").containsExactlyInAnyOrder("오", "위");
+	}
+
+	@Test
+	public void rollbackIsIgnored() {
+		assertStatistics(teamAId, 2, 60, 20, 40);
+
+		tx.executeWithoutResult(status -> {
+			em.persist(new Member("주태", 35, em.find(Team.class, teamAId)));
+			em.flush();
+			status.setRollbackOnly();
+		});
+
+		assertStatistics(teamAId, 2, 60, 20, 40);
+	}
+
+	@Test
+	public void loadWhileWriting() throws Exception {
+		store.invalidate();
+		CountDownLatch flushed = new CountDownLatch(1);
+		CountDownLatch loaded = new CountDownLatch(1);
+		ExecutorService writer = Executors.newSingleThreadExecutor();
+		try {
+			Future<?> write = writer.submit(() -> tx.executeWithoutResult(status -> {
+				findMember("육손").setAge(25);
+				em.flush();
+				flushed.countDown();
+				await(loaded);
+			}));
+			assertThat(flushed.await(10, TimeUnit.SECONDS)).isTrue();
+
+			// 커밋되지 않은 변경이 있어도 집계를 저장하고, 커밋되면 변경분을 반영한다.
+			assertStatistics(teamAId, 2, 60, 20, 40);
+			loaded.countDown();
+			write.get(10, TimeUnit.SECONDS);
+			try (SqlRecording recording = SqlRecording.start()) {
+				assertStatistics(teamAId, 2, 65, 25, 40);
+				assertThat(recording.getShapes().keySet()).noneMatch(sql -> sql.contains("from member"));
+			}
+		} finally {
+			writer.shutdownNow();
+		}
+	}
+
+	@Test
+	public void uncommittedLoadIsNotStored() {
+		store.invalidate();
+		tx.executeWithoutResult(status -> {
+			findMember("육손").setAge(25);
+			assertStatistics(teamAId, 2, 65, 25, 40);
+			status.setRollbackOnly();
+		});
+		assertStatistics(teamAId, 2, 60, 20, 40);
+	}
+
+	@Test
+	public void reconcileAfterBulk() {
+		assertStatistics(teamAId, 2, 60, 20, 40);
+
+		tx.executeWithoutResult(status -> queryFactory
+				.update(member)
+				.set(member.age, member.age.add(1))
+				.where(member.team.id.eq(teamAId))
+				.execute());
+
+		assertStatistics(teamAId, 2, 62, 21, 41);
+
+		tx.executeWithoutResult(status -> queryFactory.delete(member).where(member.team.id.eq(teamAId)).execute());
+
+		assertThat(store.get(teamAId)).isNull();
+		assertStatistics(teamBId, 2, 64, 22, 42);
+	}
+
+	private Member findMember(String username) {
+		return queryFactory.selectFrom(member).where(member.username.eq(username)).fetchOne();
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void assertStatistics(Long teamId, long count, long ageSum, int minAge, int maxAge) {
+		TeamStatistics statistics = store.get(teamId);
+		assertThat(statistics.getCount()).isEqualTo(count);
+		assertThat(statistics.getAgeSum()).isEqualTo(ageSum);
+		assertThat(statistics.getMinAge()).isEqualTo(minAge);
+		assertThat(statistics.getMaxAge()).isEqualTo(maxAge);
+	}
+}
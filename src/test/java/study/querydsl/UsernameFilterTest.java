@@ -0,0 +1,151 @@
+package study.querydsl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static querydsl.study.querydsl.entity.QMember.member;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import study.querydsl.entity.Member;
+import study.querydsl.metrics.SqlRecording;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.UsernameFilter;
+import study.querydsl.repository.support.CountingBloomFilter;
+
+public class UsernameFilterTest extends CommittedDataTest {
+
+	@Autowired
+	MemberRepository memberRepository;
+
+	@Autowired
+	MemberJpaRepository memberJpaRepository;
+
+	@Autowired
+	UsernameFilter usernameFilter;
+
+	@Override
+	protected void fixture() {
+		em.persist(new Member("손권", 50));
+		em.persist(new Member("손책", 25));
+	}
+
+	@BeforeEach
+	public void before() {
+		assertThat(usernameFilter.rebuild()).isTrue();
+	}
+
+	@Test
+	public void missWithoutQuery() {
+		assertNoQuery("손견");
+		assertThat(memberRepository.findByUsername("손권")).extracting("age").containsExactly(50);
+		assertThat(memberJpaRepository.findByUsernameQuerydsl("손책")).extracting("age").containsExactly(25);
+	}
+
+	@Test
+	public void committedChanges() {
+		tx.executeWithoutResult(status -> {
+			em.persist(new Member("손견", 37));
+			findMember("손책").setUsername("손소");
+		});
+		assertThat(memberRepository.findByUsername("손견")).hasSize(1);
+		assertThat(memberRepository.findByUsername("손소")).hasSize(1);
+		assertNoQuery("손책");
+
+		tx.executeWithoutResult(status -> em.remove(findMember("손견")));
+		assertNoQuery("손견");
+	}
+
+	@Test
+	public void uncommittedChangesInSameTransaction() {
+		tx.executeWithoutResult(status -> {
+			// flush 전이면 영속성 컨텍스트에 있으므로 filter를 쓰지 않고 조회 쿼리가 auto flush한다.
+			em.persist(new Member("손량", 16));
+			assertThat(memberRepository.findByUsername("손량")).hasSize(1);
+
+			// flush된 뒤에도 커밋 전까지는 이 트랜잭션에서만 있을 수 있는 username으로 본다.
+			em.flush();
+			em.clear();
+			assertThat(memberRepository.findByUsername("손량")).hasSize(1);
+			status.setRollbackOnly();
+		});
+		assertNoQuery("손량");
+	}
+
+	@Test
+	public void duplicateUsernames() {
+		tx.executeWithoutResult(status -> {
+			em.persist(new Member("손권", 18));
+			em.persist(new Member("Sun Quan", 70));
+		});
+		tx.executeWithoutResult(status -> em.remove(queryFactory.selectFrom(member)
+				.where(member.username.eq("손권"), member.age.eq(18))
+				.fetchOne()));
+		assertThat(memberRepository.findByUsername("손권")).extracting("age").containsExactly(50);
+
+		// 대소문자, 끝 공백을 무시하는 collation이어도 없다고 하지 않는다.
+		assertThat(definitelyAbsent("SUN QUAN ")).isFalse();
+		assertThat(definitelyAbsent("sun quan")).isFalse();
+		assertThat(definitelyAbsent("sun ce")).isTrue();
+	}
+
+	@Test
+	public void bulkUpdate() {
+		tx.executeWithoutResult(status -> {
+			queryFactory.update(member).set(member.username, "오왕").where(member.username.eq("손권")).execute();
+			// 벌크 연산 이후에는 filter를 쓰지 않는다.
+			assertThat(memberRepository.findByUsername("오왕")).hasSize(1);
+		});
+		assertThat(memberRepository.findByUsername("오왕")).hasSize(1);
+
+		assertThat(usernameFilter.rebuild()).isTrue();
+		assertThat(memberRepository.findByUsername("오왕")).hasSize(1);
+		assertNoQuery("손권");
+	}
+
+	@Test
+	public void countingBloomFilter() {
+		CountingBloomFilter filter = new CountingBloomFilter(1000, 0.01, 1024 * 1024);
+		assertThat(filter.getByteSize()).isEqualTo(9586);
+		assertThat(filter.getHashCount()).isEqualTo(7);
+
+		for (int i = 0; i < 1000; i++) {
+			filter.add("member" + i);
+		}
+		filter.remove("member0");
+		assertThat(filter.mightContain("member0")).isFalse();
+		for (int i = 1; i < 1000; i++) {
+			assertThat(filter.mightContain("member" + i)).isTrue();
+		}
+		long falsePositives = 0;
+		for (int i = 1000; i < 11000; i++) {
+			if (filter.mightContain("member" + i)) {
+				falsePositives++;
+			}
+		}
+		assertThat(falsePositives).isLessThan(200);
+
+		// 메모리 상한을 넘으면 카운터를 줄인다.
+		assertThat(new CountingBloomFilter(1000, 0.01, 1024).getByteSize()).isEqualTo(1024);
+	}
+
+	private Member findMember(String username) {
+		return queryFactory.selectFrom(member).where(member.username.eq(username)).fetchOne();
+	}
+
+	private boolean definitelyAbsent(String username) {
+		return Boolean.TRUE.equals(tx.execute(status -> usernameFilter.definitelyAbsent(username)));
+	}
+
+	private void assertNoQuery(String username) {
+		try (SqlRecording recording = SqlRecording.start()) {
+			List<Member> result = memberRepository.findByUsername(username);
+			assertThat(result).isEmpty();
+			assertThat(memberJpaRepository.findByUsernameQuerydsl(username)).isEmpty();
+			assertThat(recording.getStatementCount()).isZero();
+		}
+	}
+}
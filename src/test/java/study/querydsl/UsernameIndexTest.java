@@ -0,0 +1,99 @@
+package study.querydsl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static querydsl.study.querydsl.entity.QMember.member;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.metrics.SqlRecording;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.UsernameMatch;
+
+public class UsernameIndexTest extends CommittedDataTest {
+
+	@Autowired
+	MemberRepository memberRepository;
+
+	@Override
+	protected void fixture() {
+		Team teamA = new Team("촉");
+		em.persist(teamA);
+		em.persist(new Member("제갈량", 54, teamA));
+		em.persist(new Member("제갈근", 68));
+		em.persist(new Member("제갈첨", 37, teamA));
+		em.persist(new Member("관우", 59, teamA));
+		em.persist(new Member("관흥", 30, teamA));
+	}
+
+	@Test
+	public void prefixAndContains() {
+		assertThat(usernames(UsernameMatch.PREFIX, "제갈", 10)).containsExactly("제갈근", "제갈량", "제갈첨");
+		assertThat(usernames(UsernameMatch.PREFIX, "제갈", 2)).containsExactly("제갈근", "제갈량");
+		assertThat(usernames(UsernameMatch.CONTAINS, "갈량", 10)).containsExactly("제갈량");
+		assertThat(usernames(UsernameMatch.CONTAINS, "관", 10)).containsExactly("관우", "관흥");
+		assertThat(usernames(UsernameMatch.CONTAINS, "량제", 10)).isEmpty();
+
+		MemberTeamDto found = memberRepository.searchByUsername(UsernameMatch.CONTAINS, "첨", 10).get(0);
+		assertThat(found.getAge()).isEqualTo(37);
+		assertThat(found.getTeamName()).isEqualTo("촉");
+
+		// 인덱스로 찾은 id만 조회한다.
+		try (SqlRecording recording = SqlRecording.start()) {
+			usernames(UsernameMatch.CONTAINS, "갈", 10);
+			assertThat(recording.getShapes().keySet()).noneMatch(sql -> sql.contains("like"));
+		}
+
+		assertThatThrownBy(() -> usernames(UsernameMatch.PREFIX, "", 10))
+				.isInstanceOf(InvalidDataAccessApiUsageException.class)
+				.hasCauseInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void committedChanges() {
+		assertThat(usernames(UsernameMatch.PREFIX, "관", 10)).containsExactly("관우", "관흥");
+
+		tx.executeWithoutResult(status -> {
+			findMember("관흥").setUsername("관색");
+			em.remove(findMember("관우"));
+			em.persist(new Member("관평", 35));
+		});
+		assertThat(usernames(UsernameMatch.PREFIX, "관", 10)).containsExactly("관색", "관평");
+
+		tx.executeWithoutResult(status -> {
+			findMember("관색").setUsername("장포");
+			em.flush();
+			status.setRollbackOnly();
+		});
+		assertThat(usernames(UsernameMatch.PREFIX, "관", 10)).containsExactly("관색", "관평");
+		assertThat(usernames(UsernameMatch.CONTAINS, "포", 10)).isEmpty();
+	}
+
+	@Test
+	public void rebuildAfterBulk() {
+		assertThat(usernames(UsernameMatch.CONTAINS, "갈", 10)).hasSize(3);
+
+		tx.executeWithoutResult(status -> queryFactory
+				.update(member)
+				.set(member.username, member.username.concat("공"))
+				.where(member.username.startsWith("제갈"))
+				.execute());
+
+		assertThat(usernames(UsernameMatch.CONTAINS, "량공", 10)).containsExactly("제갈량공");
+	}
+
+	private Member findMember(String username) {
+		return queryFactory.selectFrom(member).where(member.username.eq(username)).fetchOne();
+	}
+
+	private Object[] usernames(UsernameMatch match, String keyword, int limit) {
+		return memberRepository.searchByUsername(match, keyword, limit).stream()
+				.map(MemberTeamDto::getUsername)
+				.toArray();
+	}
+}